@@ -0,0 +1,426 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One object of AircraftLayout describes the seat map of an aircraft type.
+ * A layout is parsed once from its definition and never changes afterwards,
+ * so every flight of the same aircraft type shares the same instance.
+ * <p>
+ * A definition has one instruction per line, blank lines and lines starting with # are ignored:
+ * <pre>
+ * name    widebody
+ * cabin   F WAAW 1-4
+ * cabin   E WCAACCAACW 10-12,14-40
+ * exit    25,26
+ * </pre>
+ * A cabin gives the service class ([F]irst or [E]conomy), the seat type of every column
+ * ([W]indow, [C]enter or [A]isle) and its row numbers. Row numbers must increase through the
+ * definition, go up to MAX_ROW_NUMBER at most, and the cabins of the same service class must
+ * follow each other.
+ */
+public final class AircraftLayout {
+    public static final int MAX_ROW_NUMBER = 255;
+    private static final String NAME = "name";
+    private static final String CABIN = "cabin";
+    private static final String EXIT = "exit";
+    private static final String FIRST_CLASS = "F";
+    private static final String ECONOMY_CLASS = "E";
+    private static final String DEFAULT_DEFINITION =
+            "name default\n" +
+            "cabin F WAAW 1-2\n" +
+            "cabin E WCAACW 10-29\n";
+    private static final ConcurrentHashMap<String, AircraftLayout> loadedLayouts = new ConcurrentHashMap<>();
+
+    /**
+     * The layout of the original two-cabin airplane.
+     */
+    public static final AircraftLayout DEFAULT = parse(DEFAULT_DEFINITION);
+
+    private final String name;
+    private final Cabin[] cabinOfRow;
+    private final int[] rowNumbers;
+    private final int[] rowToIndex;
+    private final BitSet exitRows;
+    private final int firstClassEnd;
+    private final int firstClassSeats;
+    private final int economySeats;
+    private final int widestFirstClassRow;
+    private final int widestEconomyRow;
+
+    /**
+     * One object of Cabin holds the seat map shared by a block of rows of the same service class.
+     */
+    public static final class Cabin {
+        private final boolean isEconomy;
+        private final SeatType[] seatMap;
+        private final long[] typeMasks;
+
+        /**
+         * Constructor of the class
+         *
+         * @param isEconomy if the cabin is first or economy class
+         * @param seatMap   the seat type of every column in a row
+         */
+        private Cabin(boolean isEconomy, SeatType[] seatMap) {
+            this.isEconomy = isEconomy;
+            this.seatMap = seatMap;
+            typeMasks = new long[SeatRow.NUM_SEAT_TYPES];
+            for (int i = 0; i < seatMap.length; i++) {
+                typeMasks[seatMap[i].ordinal()] |= 1L << i;
+            }
+        }
+
+        /**
+         * Checks if the cabin is in economy service class
+         *
+         * @return true if it is economy and false if it is first
+         */
+        public boolean isEconomy() {
+            return isEconomy;
+        }
+
+        /**
+         * Gets the number of seats in a row of the cabin
+         *
+         * @return the number of seats
+         */
+        public int getSeatsInRow() {
+            return seatMap.length;
+        }
+
+        /**
+         * Gets the seat type of a column
+         *
+         * @param col the column of the seat
+         * @return the seat type
+         */
+        public SeatType getSeatType(int col) {
+            return seatMap[col];
+        }
+
+        /**
+         * Gets the columns of a seat type as a bitmask
+         *
+         * @param typeIndex index of the seat type
+         * @return a bitmask where bit i is set when column i is of the seat type
+         */
+        public long getTypeMask(int typeIndex) {
+            return typeMasks[typeIndex];
+        }
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param name       the name of the layout
+     * @param cabinOfRow the cabin of every row ordered by row number
+     * @param rowNumbers the row number of every row
+     * @param exitRows   the row numbers of the exit rows
+     */
+    private AircraftLayout(String name, Cabin[] cabinOfRow, int[] rowNumbers, BitSet exitRows) {
+        this.name = name;
+        this.cabinOfRow = cabinOfRow;
+        this.rowNumbers = rowNumbers;
+        this.exitRows = exitRows;
+
+        int maxRow = (rowNumbers.length == 0) ? 0 : rowNumbers[rowNumbers.length - 1];
+        rowToIndex = new int[maxRow + 1];
+        Arrays.fill(rowToIndex, -1);
+        int firstEnd = 0;
+        int firstSeats = 0;
+        int ecoSeats = 0;
+        int widestFirst = 0;
+        int widestEco = 0;
+        for (int i = 0; i < rowNumbers.length; i++) {
+            rowToIndex[rowNumbers[i]] = i;
+            int seatsInRow = cabinOfRow[i].getSeatsInRow();
+            if (cabinOfRow[i].isEconomy()) {
+                ecoSeats += seatsInRow;
+                widestEco = Math.max(widestEco, seatsInRow);
+            } else {
+                firstSeats += seatsInRow;
+                widestFirst = Math.max(widestFirst, seatsInRow);
+                firstEnd = i + 1;
+            }
+        }
+        firstClassEnd = firstEnd;
+        firstClassSeats = firstSeats;
+        economySeats = ecoSeats;
+        widestFirstClassRow = widestFirst;
+        widestEconomyRow = widestEco;
+    }
+
+    /**
+     * Loads a layout from a file. A file is only parsed once, later calls return the same layout.
+     *
+     * @param file the layout definition file
+     * @return the layout
+     * @throws IOException if the file cannot be read
+     */
+    public static AircraftLayout load(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        AircraftLayout layout = loadedLayouts.get(key);
+        if (layout == null) {
+            layout = parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            AircraftLayout previous = loadedLayouts.putIfAbsent(key, layout);
+            if (previous != null) {
+                layout = previous;
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Parses a layout definition.
+     *
+     * @param definition the layout definition
+     * @return the layout
+     * @throws IllegalArgumentException if the definition is invalid
+     */
+    public static AircraftLayout parse(String definition) {
+        String name = "";
+        ArrayList<Cabin> cabins = new ArrayList<>();
+        ArrayList<Integer> rows = new ArrayList<>();
+        ArrayList<Integer> exits = new ArrayList<>();
+        boolean economyStarted = false;
+        int lineNum = 0;
+
+        for (String line : definition.split("\n")) {
+            lineNum++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] info = line.split("\\s+");
+            switch (info[0]) {
+                case NAME:
+                    checkArguments(info, 2, lineNum);
+                    name = info[1];
+                    break;
+                case CABIN:
+                    checkArguments(info, 4, lineNum);
+                    boolean isEconomy = parseServiceClass(info[1], lineNum);
+                    if (!isEconomy && economyStarted) {
+                        throw new IllegalArgumentException("Line " + lineNum + ": first class cabins must come before economy");
+                    }
+                    economyStarted |= isEconomy;
+                    Cabin cabin = new Cabin(isEconomy, parseSeatMap(info[2], lineNum));
+                    for (int row : parseRowNumbers(info[3], lineNum)) {
+                        if (!rows.isEmpty() && row <= rows.get(rows.size() - 1)) {
+                            throw new IllegalArgumentException("Line " + lineNum + ": row " + row + " is out of order");
+                        }
+                        rows.add(row);
+                        cabins.add(cabin);
+                    }
+                    break;
+                case EXIT:
+                    checkArguments(info, 2, lineNum);
+                    exits.addAll(parseRowNumbers(info[1], lineNum));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Line " + lineNum + ": unknown instruction " + info[0]);
+            }
+        }
+
+        int[] rowNumbers = new int[rows.size()];
+        for (int i = 0; i < rowNumbers.length; i++) {
+            rowNumbers[i] = rows.get(i);
+        }
+        BitSet exitRows = new BitSet();
+        for (int row : exits) {
+            if (!rows.contains(row)) {
+                throw new IllegalArgumentException("Exit row " + row + " is not in any cabin");
+            }
+            exitRows.set(row);
+        }
+        return new AircraftLayout(name, cabins.toArray(new Cabin[0]), rowNumbers, exitRows);
+    }
+
+    /**
+     * Checks the number of arguments of an instruction.
+     *
+     * @param info     the instruction and its arguments
+     * @param expected the expected number of words
+     * @param lineNum  the line of the instruction
+     */
+    private static void checkArguments(String[] info, int expected, int lineNum) {
+        if (info.length != expected) {
+            throw new IllegalArgumentException("Line " + lineNum + ": " + info[0] + " needs " + (expected - 1) + " arguments");
+        }
+    }
+
+    /**
+     * Parses a service class.
+     *
+     * @param serviceClass [F]irst or [E]conomy
+     * @param lineNum      the line of the instruction
+     * @return true if it is economy and false if it is first
+     */
+    private static boolean parseServiceClass(String serviceClass, int lineNum) {
+        switch (serviceClass.toUpperCase()) {
+            case FIRST_CLASS:
+                return false;
+            case ECONOMY_CLASS:
+                return true;
+        }
+        throw new IllegalArgumentException("Line " + lineNum + ": unknown service class " + serviceClass);
+    }
+
+    /**
+     * Parses the seat types of the columns in a row.
+     *
+     * @param seats   one seat type letter per column
+     * @param lineNum the line of the instruction
+     * @return the seat type of every column
+     */
+    private static SeatType[] parseSeatMap(String seats, int lineNum) {
+        if (seats.length() > SeatRow.MAX_SEATS_IN_ROW) {
+            throw new IllegalArgumentException("Line " + lineNum + ": a row has at most " + SeatRow.MAX_SEATS_IN_ROW + " seats");
+        }
+        SeatType[] seatMap = new SeatType[seats.length()];
+        for (int i = 0; i < seatMap.length; i++) {
+            seatMap[i] = SeatType.fromCode(Character.toUpperCase(seats.charAt(i)));
+            if (seatMap[i] == null) {
+                throw new IllegalArgumentException("Line " + lineNum + ": unknown seat type " + seats.charAt(i));
+            }
+        }
+        return seatMap;
+    }
+
+    /**
+     * Parses a comma separated list of row numbers and row ranges, e.g. 10-12,14-30.
+     *
+     * @param rowList the list of rows
+     * @param lineNum the line of the instruction
+     * @return the row numbers
+     */
+    private static ArrayList<Integer> parseRowNumbers(String rowList, int lineNum) {
+        ArrayList<Integer> rows = new ArrayList<>();
+        try {
+            for (String range : rowList.split(",")) {
+                String[] bounds = range.split("-");
+                int first = Integer.parseInt(bounds[0]);
+                int last = (bounds.length > 1) ? Integer.parseInt(bounds[1]) : first;
+                if (first <= 0 || last < first || bounds.length > 2) {
+                    throw new NumberFormatException();
+                }
+                if (last > MAX_ROW_NUMBER) {
+                    throw new IllegalArgumentException("Line " + lineNum + ": row numbers go up to " + MAX_ROW_NUMBER);
+                }
+                for (int row = first; row <= last; row++) {
+                    rows.add(row);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNum + ": invalid rows " + rowList);
+        }
+        return rows;
+    }
+
+    /**
+     * Accessor of the layout name
+     *
+     * @return the name of the layout
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of rows in the airplane
+     *
+     * @return the number of rows
+     */
+    public int getNumOfRows() {
+        return rowNumbers.length;
+    }
+
+    /**
+     * Gets the row number of a row
+     *
+     * @param index the index of the row
+     * @return the row number
+     */
+    public int getRowNumber(int index) {
+        return rowNumbers[index];
+    }
+
+    /**
+     * Converts a row number to the index of the row
+     *
+     * @param rowNum the row number
+     * @return the index of the row or -1 if the airplane has no such row
+     */
+    public int getRowIndex(int rowNum) {
+        if (rowNum < 0 || rowNum >= rowToIndex.length) {
+            return -1;
+        }
+        return rowToIndex[rowNum];
+    }
+
+    /**
+     * Gets the cabin of a row
+     *
+     * @param index the index of the row
+     * @return the cabin
+     */
+    public Cabin getCabin(int index) {
+        return cabinOfRow[index];
+    }
+
+    /**
+     * Checks if a row is an exit row
+     *
+     * @param rowNum the row number
+     * @return true if it is an exit row
+     */
+    public boolean isExitRow(int rowNum) {
+        return exitRows.get(rowNum);
+    }
+
+    /**
+     * Gets the index of the first row of a service class
+     *
+     * @param isEconomy if it is economy or first class
+     * @return the index of the first row (inclusive)
+     */
+    public int getStartIndex(boolean isEconomy) {
+        return isEconomy ? firstClassEnd : 0;
+    }
+
+    /**
+     * Gets the index after the last row of a service class
+     *
+     * @param isEconomy if it is economy or first class
+     * @return the index after the last row (exclusive)
+     */
+    public int getEndIndex(boolean isEconomy) {
+        return isEconomy ? rowNumbers.length : firstClassEnd;
+    }
+
+    /**
+     * Gets the number of seats in a service class
+     *
+     * @param isEconomy if it is economy or first class
+     * @return the number of seats
+     */
+    public int getNumOfSeats(boolean isEconomy) {
+        return isEconomy ? economySeats : firstClassSeats;
+    }
+
+    /**
+     * Gets the number of seats in the widest row of a service class
+     *
+     * @param isEconomy if it is economy or first class
+     * @return the number of seats
+     */
+    public int getWidestRow(boolean isEconomy) {
+        return isEconomy ? widestEconomyRow : widestFirstClassRow;
+    }
+}
@@ -1,55 +1,189 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * One object of AirplaneSeats represents all seats in an airplane.
  */
 public class AirplaneSeats {
+    private static final int MAX_GROUP_CLAIM_MISSES = 64;
 
-    private static final int NUM_ROWS_OF_FIRST_CLASS = 2;
-    private static final int NUM_ROWS_OF_ECO_CLASS = 20;
-    private static final int INDEX_OF_ECO_START = NUM_ROWS_OF_FIRST_CLASS;
-    private static final int INDEX_OF_FIRST_START = 0;
-    private static final int ROW_FIRST_START = 1;
-    private static final int ROW_ECO_START = 10;
+    private AircraftLayout layout;
+    private BookingMode bookingMode;
+    private ArrayList<SeatRow> airplaneSeats = new ArrayList<>();
+    private ReentrantLock[] rowLocks;
+    private RowBitSet[] rowsWithFreeType = new RowBitSet[SeatRow.NUM_SEAT_TYPES];
+    private FreeRunTree freeRuns;
+    private final AtomicInteger emptyFirstSeats = new AtomicInteger();
+    private final AtomicInteger emptyEcoSeats = new AtomicInteger();
+    private ReservationMetrics metrics = NoOpReservationMetrics.INSTANCE;
+    private AvailabilityLine[] availabilityLines;
+    private final LongAdder firstClassVersion = new LongAdder();
+    private final LongAdder economyVersion = new LongAdder();
 
+    /**
+     * The rendered availability chart line of a row for one set of free seats. Lines are
+     * immutable, so they can be shared between threads without locks.
+     */
+    private static final class AvailabilityLine {
+        private final long free;
+        private final String text;
+
+        /**
+         * Constructor of the class
+         *
+         * @param free the free seats the line shows
+         * @param text the rendered line
+         */
+        private AvailabilityLine(long free, String text) {
+            this.free = free;
+            this.text = text;
+        }
+    }
 
-    private ArrayList<SeatRow> airplaneSeats = new ArrayList<>();
-    private int emptyFirstSeats = 0;
-    private int emptyEcoSeats = 0;
 
+    /**
+     * Constructor for the class using the default layout.
+     */
+    public AirplaneSeats() {
+        this(AircraftLayout.DEFAULT);
+    }
 
     /**
      * Constructor for the class.
+     *
+     * @param layout the seat layout of the airplane.
      */
-    public AirplaneSeats() {
-        allocateSeatRow(false);
-        allocateSeatRow(true);
+    public AirplaneSeats(AircraftLayout layout) {
+        this(layout, BookingMode.SINGLE_THREADED);
     }
 
     /**
-     * Allocates all seat rows depending on the service class.
-     * @param isEconomy if it is for economy class or first class.
+     * Constructor for the class.
+     *
+     * @param layout      the seat layout of the airplane.
+     * @param bookingMode how the seats are protected against concurrent bookings.
      */
-    private void allocateSeatRow(boolean isEconomy) {
-        int rowNumStart;
-        int totalRow;
-        if (isEconomy) {
-            rowNumStart = ROW_ECO_START;
-            totalRow = NUM_ROWS_OF_ECO_CLASS;
-            emptyEcoSeats = SeatRow.ECONOMY_SEATS_MAP.length * NUM_ROWS_OF_ECO_CLASS;
+    public AirplaneSeats(AircraftLayout layout, BookingMode bookingMode) {
+        this.layout = layout;
+        this.bookingMode = bookingMode;
+        allocateSeatRows();
+        if (bookingMode == BookingMode.ROW_LOCKING) {
+            rowLocks = new ReentrantLock[airplaneSeats.size()];
+            for (int i = 0; i < rowLocks.length; i++) {
+                rowLocks[i] = new ReentrantLock();
+            }
+        }
+        for (int type = 0; type < rowsWithFreeType.length; type++) {
+            rowsWithFreeType[type] = new RowBitSet(airplaneSeats.size());
+        }
+        freeRuns = new FreeRunTree(airplaneSeats.size());
+        for (int i = 0; i < airplaneSeats.size(); i++) {
+            updateFreeSeatIndexes(i);
+        }
+        availabilityLines = new AvailabilityLine[airplaneSeats.size()];
+    }
 
-        } else {
-            rowNumStart = ROW_FIRST_START;
-            totalRow = NUM_ROWS_OF_FIRST_CLASS;
-            emptyFirstSeats =  SeatRow.FIRST_CLASS_SEAT_MAP.length * NUM_ROWS_OF_FIRST_CLASS;
+    /**
+     * Allocates all seat rows of the layout.
+     */
+    private void allocateSeatRows() {
+        for (int i = 0; i < layout.getNumOfRows(); i++) {
+            airplaneSeats.add(new SeatRow(layout.getCabin(i), layout.getRowNumber(i),
+                    bookingMode == BookingMode.LOCK_FREE));
+        }
+        emptyEcoSeats.set(layout.getNumOfSeats(true));
+        emptyFirstSeats.set(layout.getNumOfSeats(false));
+    }
+
+    /**
+     * Accessor of the seat layout.
+     *
+     * @return the layout of the airplane.
+     */
+    public AircraftLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Accessor of the booking mode.
+     *
+     * @return how the seats are protected against concurrent bookings.
+     */
+    public BookingMode getBookingMode() {
+        return bookingMode;
+    }
+
+    /**
+     * Sets where the timings of the seat searches are recorded.
+     *
+     * @param metrics the metrics recorder
+     */
+    public void setMetrics(ReservationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Locks a seat row when bookings run concurrently.
+     *
+     * @param index the index of the SeatRow in the airplaneSeats list.
+     */
+    private void lockRow(int index) {
+        if (rowLocks != null) {
+            rowLocks[index].lock();
         }
-        SeatRow row;
-        for (int i = 0; i < totalRow; i++) {
-            row = new SeatRow(isEconomy, i + rowNumStart);
-            airplaneSeats.add(row);
+    }
+
+    /**
+     * Unlocks a seat row locked by lockRow.
+     *
+     * @param index the index of the SeatRow in the airplaneSeats list.
+     */
+    private void unlockRow(int index) {
+        if (rowLocks != null) {
+            rowLocks[index].unlock();
+        }
+    }
+
+    /**
+     * Updates the indexes kept over the seat rows after seats of a row are taken or returned,
+     * and marks the row as changed since the last checkpoint. Nothing here is locked for the
+     * whole airplane: the indexes are updated with compare-and-set, the mark is kept on the row
+     * and the versions are striped counters, so bookings of different rows do not wait on each other.
+     *
+     * @param index the index of the changed SeatRow in the airplaneSeats list.
+     */
+    private void rowChanged(int index) {
+        updateFreeSeatIndexes(index);
+        airplaneSeats.get(index).markDirty();
+        if (index >= layout.getStartIndex(true) && index < layout.getEndIndex(true)) {
+            economyVersion.increment();
+        } else {
+            firstClassVersion.increment();
         }
     }
 
+    /**
+     * Updates the indexes of empty seats for a row.
+     * When the row changes again while it is re-indexed, e.g. by a lock-free booking,
+     * the indexes are updated again so the last thread to change the row leaves them up to date.
+     *
+     * @param index the index of the row in the airplaneSeats list.
+     */
+    private void updateFreeSeatIndexes(int index) {
+        SeatRow row = airplaneSeats.get(index);
+        long free;
+        do {
+            free = row.getFreeSeats();
+            for (int type = 0; type < rowsWithFreeType.length; type++) {
+                rowsWithFreeType[type].set(index, row.isTheSeatAvailable(free, type));
+            }
+            freeRuns.update(index, SeatRow.findMaxAdjacentSeats(free));
+        } while (free != row.getFreeSeats());
+    }
+
     /**
      * Converts the row number to the index of airplaneSeats array list.
      *
@@ -57,10 +191,11 @@ public class AirplaneSeats {
      * @return an index of the SeatRow in the airplaneSeats list.
      */
     private int convertRowToIndex(int row) {
-        if (row <= NUM_ROWS_OF_FIRST_CLASS) {
-            return row - ROW_FIRST_START;
+        int index = layout.getRowIndex(row);
+        if (index < 0) {
+            throw new IllegalArgumentException("Row " + row + " is not on the airplane");
         }
-        return (row - ROW_ECO_START) + INDEX_OF_ECO_START;
+        return index;
     }
 
     /**
@@ -69,7 +204,7 @@ public class AirplaneSeats {
      * @return the number of vacant seats.
      */
     public int getEmptyFirstSeats() {
-        return emptyFirstSeats;
+        return emptyFirstSeats.get();
     }
 
     /**
@@ -78,31 +213,80 @@ public class AirplaneSeats {
      * @return the number of vacant seats.
      */
     public int getEmptyEcoSeats() {
-        return emptyEcoSeats;
+        return emptyEcoSeats.get();
+    }
+
+    /**
+     * Gets the seat types with a free seat in a service class.
+     *
+     * @param isEconomy economy or first class.
+     * @return a bitmask where bit i is set when a seat of the type of ordinal i is free.
+     */
+    public int getFreeSeatTypes(boolean isEconomy) {
+        int types = 0;
+        for (SeatType seatType : SeatType.values()) {
+            if (findAvailableSeatRow(isEconomy, seatType) != null) {
+                types |= 1 << seatType.ordinal();
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Gets the longest run of free adjacent seats in a row of a service class.
+     *
+     * @param isEconomy economy or first class.
+     * @return the number of seats in the run.
+     */
+    public int getLongestFreeRun(boolean isEconomy) {
+        return freeRuns.getMax(layout.getStartIndex(isEconomy), layout.getEndIndex(isEconomy));
+    }
+
+    /**
+     * Gets the number of seats in the widest row of a service class.
+     *
+     * @param isEconomy economy or first class.
+     * @return the number of seats.
+     */
+    public int getWidestRow(boolean isEconomy) {
+        return layout.getWidestRow(isEconomy);
     }
 
     /**
      * Gets a row with avalible seats for the seat type.
+     * When bookings run concurrently the seat may be taken before the caller books it,
+     * in which case individualReservation fails and the caller asks for another row.
      *
      * @param isEconomy To get a row in economy or not.
      * @param seatType The type of seat to get.
      * @return The avalible row.
      */
-    public SeatRow getAvailableSeatRow(boolean isEconomy, String seatType) {
-        int end = NUM_ROWS_OF_FIRST_CLASS;
-        int start = INDEX_OF_FIRST_START;
+    public SeatRow getAvailableSeatRow(boolean isEconomy, SeatType seatType) {
+        long startTime = metrics.startTimer();
+        SeatRow row = findAvailableSeatRow(isEconomy, seatType);
+        metrics.record(ReservationMetrics.Operation.SEAT_SEARCH, startTime);
+        return row;
+    }
 
-        if (isEconomy) {
-            start = INDEX_OF_ECO_START;
-            end = airplaneSeats.size();
+    /**
+     * Finds the first row with a free seat of a type in the free seat index.
+     *
+     * @param isEconomy To get a row in economy or not.
+     * @param seatType The type of seat to get.
+     * @return The avalible row or null.
+     */
+    private SeatRow findAvailableSeatRow(boolean isEconomy, SeatType seatType) {
+        int start = layout.getStartIndex(isEconomy);
+        int end = layout.getEndIndex(isEconomy);
+        int typeIndex = SeatRow.seatTypeIndex(seatType);
+        if (typeIndex < 0) {
+            return null;
         }
-        for (int i = start; i < end; i++) {
-            SeatRow row = airplaneSeats.get(i);
-            if (row.isTheSeatAvailable(seatType)) {
-                return row;
-            }
+        int index = rowsWithFreeType[typeIndex].nextSetBit(start);
+        if (index < 0 || index >= end) {
+            return null;
         }
-        return null;
+        return airplaneSeats.get(index);
     }
 
     /**
@@ -110,7 +294,7 @@ public class AirplaneSeats {
      * @return True if there are no seats left.
      */   
     public boolean isFull() {
-        return (emptyEcoSeats + emptyFirstSeats == 0);
+        return (emptyEcoSeats.get() + emptyFirstSeats.get() == 0);
     }
 
     /**
@@ -120,11 +304,93 @@ public class AirplaneSeats {
      * @return true if successfully reserve a passenger.
      */
     public boolean individualReservation(Passenger pas, SeatRow row) {
-        if (row.addIndividualToSeat(pas)) {
+        return seatIndividual(pas, row, false);
+    }
+
+    /**
+     * Holds a seat for a passenger in a row until the hold is confirmed or the passenger removed.
+     * The held seat is taken like a reserved one but the passenger is not listed in the row.
+     *
+     * @param pas the passenger to hold a seat for.
+     * @param row the row to hold the seat in.
+     * @return true if a seat is held.
+     */
+    public boolean holdIndividual(Passenger pas, SeatRow row) {
+        return seatIndividual(pas, row, true);
+    }
+
+    /**
+     * Turns the seat held by a passenger into a reservation.
+     *
+     * @param pas the passenger holding a seat.
+     * @return false if the passenger does not hold the seat.
+     */
+    public boolean confirmHold(Passenger pas) {
+        Seat seat = pas.getSeat();
+        int index = convertRowToIndex(seat.getRow());
+        lockRow(index);
+        try {
+            if (!airplaneSeats.get(index).confirmHeldSeat(seat.getCol())) {
+                return false;
+            }
+            rowChanged(index);
+        } finally {
+            unlockRow(index);
+        }
+        return true;
+    }
+
+    /**
+     * Reserves or holds a seat of the passenger's preferred type in a row.
+     *
+     * @param pas    the passenger.
+     * @param row    the row.
+     * @param isHold to hold the seat instead of reserving it.
+     * @return true if the passenger got a seat.
+     */
+    private boolean seatIndividual(Passenger pas, SeatRow row, boolean isHold) {
+        int index = convertRowToIndex(row.getRowNumber());
+        if (bookingMode == BookingMode.LOCK_FREE) {
+            if (!takeVacantSeats(1, pas.isEconomy())) {
+                return false;
+            }
+            boolean isAdded = isHold ? row.holdIndividualSeat(pas) : row.addIndividualToSeat(pas);
+            rowChanged(index);
+            if (!isAdded) {
+                changeTotalVacantSeats(1, pas.isEconomy());
+            }
+            return isAdded;
+        }
+        lockRow(index);
+        try {
+            if (!(isHold ? row.holdIndividualSeat(pas) : row.addIndividualToSeat(pas))) {
+                return false;
+            }
+            rowChanged(index);
             changeTotalVacantSeats(-1, pas.isEconomy());
-            return true;
+        } finally {
+            unlockRow(index);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a passenger directly to a given seat, e.g. when restoring reservations.
+     *
+     * @param pas     the passenger to add.
+     * @param rowNum  the row number of the seat.
+     * @param seatCol the column of the seat.
+     */
+    public void addPasToSeat(Passenger pas, int rowNum, int seatCol) {
+        int index = convertRowToIndex(rowNum);
+        lockRow(index);
+        try {
+            airplaneSeats.get(index).addToSeat(pas, seatCol);
+            rowChanged(index);
+            changeTotalVacantSeats(-1, pas.isEconomy());
+        } finally {
+            unlockRow(index);
         }
-        return false;
     }
 
     /**
@@ -135,12 +401,32 @@ public class AirplaneSeats {
      */
     public void changeTotalVacantSeats(int num, boolean isEconomy) {
         if (isEconomy) {
-            emptyEcoSeats += num;
+            emptyEcoSeats.addAndGet(num);
         } else {
-            emptyFirstSeats += num;
+            emptyFirstSeats.addAndGet(num);
         }
     }
 
+    /**
+     * Takes seats from the total vacant seats if there are enough of them. A lock-free booking
+     * takes its seats from the total before claiming them, so the seats it needs stay empty.
+     *
+     * @param num       the number of seats to take.
+     * @param isEconomy to take economy class or first class seats.
+     * @return true if the seats are taken.
+     */
+    private boolean takeVacantSeats(int num, boolean isEconomy) {
+        AtomicInteger emptySeats = isEconomy ? emptyEcoSeats : emptyFirstSeats;
+        int vacant;
+        do {
+            vacant = emptySeats.get();
+            if (vacant < num) {
+                return false;
+            }
+        } while (!emptySeats.compareAndSet(vacant, vacant - num));
+        return true;
+    }
+
     /**
      * Finds seatRow that contains the passenger and removes them.
      *
@@ -149,86 +435,101 @@ public class AirplaneSeats {
      */
     public boolean removeIndividual(Passenger pas) {
         Seat seatToCancel = pas.getSeat();
-        SeatRow row = airplaneSeats.get(convertRowToIndex(seatToCancel.getRow()));
+        int index = convertRowToIndex(seatToCancel.getRow());
+        SeatRow row = airplaneSeats.get(index);
 
-        if (row.removePasFromSeat(seatToCancel.getCol())) {
+        lockRow(index);
+        try {
+            if (!row.removePasFromSeat(seatToCancel.getCol())) {
+                return false;
+            }
+            rowChanged(index);
             changeTotalVacantSeats(1, pas.isEconomy());
-            return true;
+        } finally {
+            unlockRow(index);
         }
-        return false;
+        return true;
     }
 
 
     /**
-     * Makes group reservation.
+     * Makes group reservation. When bookings run concurrently all rows of the service class
+     * are locked in row order, so two group bookings never wait on each other's rows.
      *
      * @param pasGroup a group of passenger needs to make reservation.
      * @return true if successfully reserves.
      */
     public boolean addGroup(GroupOfPassenger pasGroup) {
+        long startTime = metrics.startTimer();
+        boolean isAdded = placeGroup(pasGroup);
+        metrics.record(ReservationMetrics.Operation.GROUP_PLACEMENT, startTime);
+        return isAdded;
+    }
 
-        int end = NUM_ROWS_OF_FIRST_CLASS;
-        int start = INDEX_OF_FIRST_START;
+    /**
+     * Finds adjacent seats for a group and claims them.
+     *
+     * @param pasGroup a group of passenger needs to make reservation.
+     * @return true if successfully reserves.
+     */
+    private boolean placeGroup(GroupOfPassenger pasGroup) {
 
-        if (pasGroup.isEconomy()) {
-            start = INDEX_OF_ECO_START;
-            end = airplaneSeats.size();
+        int start = layout.getStartIndex(pasGroup.isEconomy());
+        int end = layout.getEndIndex(pasGroup.isEconomy());
+
+        if (bookingMode == BookingMode.LOCK_FREE) {
+            return addGroupLockFree(pasGroup, start, end);
+        }
+        for (int i = start; i < end; i++) {
+            lockRow(i);
         }
+        try {
+            return addGroup(pasGroup, start, end);
+        } finally {
+            for (int i = end - 1; i >= start; i--) {
+                unlockRow(i);
+            }
+        }
+    }
 
+    /**
+     * Makes group reservation in a range of rows.
+     *
+     * @param pasGroup a group of passenger needs to make reservation.
+     * @param start    the index of the first row of the service class.
+     * @param end      the index after the last row of the service class.
+     * @return true if successfully reserves.
+     */
+    private boolean addGroup(GroupOfPassenger pasGroup, int start, int end) {
         ArrayList<Passenger> passengers = pasGroup.getPassengerGroup();
 
         int numOfPas = passengers.size();
-
-        ArrayList<Integer> maxAdjSeatPerRow = new ArrayList<Integer>();
-
-        SeatRow row;
-
-        for (int i = start; i < end; i++) {
-            row = airplaneSeats.get(i);
-            maxAdjSeatPerRow.add(row.findMaxAdjacentSeats());
+        int emptySeats = pasGroup.isEconomy() ? emptyEcoSeats.get() : emptyFirstSeats.get();
+        if (numOfPas > emptySeats) {
+            return false;
         }
 
         int indexOfPas = 0;
 
         while (numOfPas > 0) {
 
-            int indexOfMax = 0;
-            int maxNumOfSeat = 0;
-
-            for (int index = 0; index < maxAdjSeatPerRow.size(); index++) {
-
-                int numOfSeat = maxAdjSeatPerRow.get(index);
-
-                if (numOfSeat >= numOfPas) {
-                    maxNumOfSeat = numOfPas;
-                    indexOfMax = index;
+            int numOfSeat = numOfPas;
+            int index = freeRuns.findFirstAtLeast(start, end, numOfPas);
+            if (index < 0) {
+                index = freeRuns.findMax(start, end);
+                if (index < 0) {
                     break;
                 }
-
-                if (numOfSeat > maxNumOfSeat) {
-                    maxNumOfSeat = numOfSeat;
-                    indexOfMax = index;
-
-                }
-
-            }
-            SeatRow maxRow = airplaneSeats.get(indexOfMax + start);
-
-            ArrayList<Passenger> partialPasList = new ArrayList<Passenger>();
-            int indexOfPassBefore = indexOfPas;
-            while (maxNumOfSeat > 0) {
-                Passenger pas = passengers.get(indexOfPas);
-                partialPasList.add(pas);
-                indexOfPas++;
-                maxNumOfSeat--;
+                numOfSeat = freeRuns.get(index);
             }
+            SeatRow row = airplaneSeats.get(index);
 
-            if (maxRow.groupReservation(partialPasList)) {
-                numOfPas -= partialPasList.size();
-                maxAdjSeatPerRow.set(indexOfMax, maxRow.findMaxAdjacentSeats());
+            if (!row.groupReservation(passengers.subList(indexOfPas, indexOfPas + numOfSeat))) {
+                break;
             }
-            else
-                indexOfPas = indexOfPassBefore;
+            rowChanged(index);
+            indexOfPas += numOfSeat;
+            numOfPas -= numOfSeat;
         }
 
         if (numOfPas == 0) {
@@ -239,6 +540,62 @@ public class AirplaneSeats {
     }
 
 
+    /**
+     * Makes group reservation without locks. The seats of the group are taken from the total
+     * vacant seats first, so enough empty seats remain for the group while blocks of adjacent
+     * seats are claimed row by row. A block lost to another booking is looked up again, and when
+     * the index of free runs finds no block, which it can while other bookings update it, the
+     * index is rebuilt from the rows. After too many misses the seats claimed so far are given
+     * back and the group is not seated, as if the seats had run out.
+     *
+     * @param pasGroup a group of passenger needs to make reservation.
+     * @param start    the index of the first row of the service class.
+     * @param end      the index after the last row of the service class.
+     * @return true if successfully reserves.
+     */
+    private boolean addGroupLockFree(GroupOfPassenger pasGroup, int start, int end) {
+        ArrayList<Passenger> passengers = pasGroup.getPassengerGroup();
+        int numOfPas = passengers.size();
+        if (!takeVacantSeats(numOfPas, pasGroup.isEconomy())) {
+            return false;
+        }
+
+        int indexOfPas = 0;
+        int numOfMisses = 0;
+        while (indexOfPas < numOfPas) {
+            int numOfSeat = numOfPas - indexOfPas;
+            int index = freeRuns.findFirstAtLeast(start, end, numOfSeat);
+            if (index < 0) {
+                index = freeRuns.findMax(start, end);
+                if (index >= 0) {
+                    numOfSeat = Math.min(numOfSeat, freeRuns.get(index));
+                }
+            }
+            boolean isAdded = false;
+            if (index >= 0 && numOfSeat > 0) {
+                isAdded = airplaneSeats.get(index).groupReservation(passengers.subList(indexOfPas, indexOfPas + numOfSeat));
+                rowChanged(index);
+            } else {
+                for (int i = start; i < end; i++) {
+                    updateFreeSeatIndexes(i);
+                }
+            }
+            if (isAdded) {
+                indexOfPas += numOfSeat;
+            } else if (++numOfMisses > MAX_GROUP_CLAIM_MISSES) {
+                for (Passenger pas : passengers.subList(0, indexOfPas)) {
+                    int seated = convertRowToIndex(pas.getSeat().getRow());
+                    airplaneSeats.get(seated).removePasFromSeat(pas.getSeat().getCol());
+                    rowChanged(seated);
+                }
+                changeTotalVacantSeats(numOfPas, pasGroup.isEconomy());
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     /**
      * Removes a group of passenger from reservation.
      *
@@ -264,18 +621,18 @@ public class AirplaneSeats {
      * @return a map with key as the seat row number and value as a list of the empty seat columns.
      */
     public TreeMap<Integer, ArrayList<Integer>> getAllVacantSeats(boolean isEconomy) {
-        int start = INDEX_OF_ECO_START;
-        int end = airplaneSeats.size();
-
-        if (!isEconomy) {
-            start = INDEX_OF_FIRST_START;
-            end = NUM_ROWS_OF_FIRST_CLASS;
-        }
+        int start = layout.getStartIndex(isEconomy);
+        int end = layout.getEndIndex(isEconomy);
         TreeMap<Integer, ArrayList<Integer>> seatList = new TreeMap<Integer, ArrayList<Integer>>();
         ArrayList<Integer> vacantRows;
         for (int i = start; i < end; i++) {
             SeatRow row = airplaneSeats.get(i);
-            vacantRows = row.findEmptySpot();
+            lockRow(i);
+            try {
+                vacantRows = row.findEmptySpot();
+            } finally {
+                unlockRow(i);
+            }
             if (vacantRows == null) {
                 continue;
             }
@@ -284,6 +641,64 @@ public class AirplaneSeats {
         return seatList;
     }
 
+    /**
+     * Gets a number that changes whenever a seat of a service class is reserved or freed,
+     * so a chart rendered for one version is still valid while the version stays the same.
+     *
+     * @param isEconomy if request is for economy class or first class
+     * @return the version of the seats of the service class
+     */
+    public long getVersion(boolean isEconomy) {
+        return isEconomy ? economyVersion.sum() : firstClassVersion.sum();
+    }
+
+    /**
+     * Appends the availability chart line of every row with vacant seats. The line of a row is
+     * rendered again only when the free seats of the row differ from the ones it was rendered for.
+     *
+     * @param isEconomy if request is for economy class or first class
+     * @param chart     receives the lines
+     */
+    public void appendAvailabilityLines(boolean isEconomy, StringBuilder chart) {
+        int start = layout.getStartIndex(isEconomy);
+        int end = layout.getEndIndex(isEconomy);
+        for (int i = start; i < end; i++) {
+            SeatRow row = airplaneSeats.get(i);
+            long free;
+            lockRow(i);
+            try {
+                free = row.getFreeSeats();
+            } finally {
+                unlockRow(i);
+            }
+            if (free == 0) {
+                continue;
+            }
+            AvailabilityLine line = availabilityLines[i];
+            if (line == null || line.free != free) {
+                line = new AvailabilityLine(free, renderAvailabilityLine(row.getRowNumber(), free));
+                availabilityLines[i] = line;
+            }
+            chart.append(line.text);
+        }
+    }
+
+    /**
+     * Renders the availability chart line of a row.
+     *
+     * @param rowNum the row number
+     * @param free   the free seats of the row
+     * @return the row number followed by the column letter of every free seat
+     */
+    private static String renderAvailabilityLine(int rowNum, long free) {
+        StringBuilder line = new StringBuilder();
+        line.append(rowNum).append(":\t");
+        for (long seats = free; seats != 0; seats &= seats - 1) {
+            line.append(Seat.toColumnLetter(Long.numberOfTrailingZeros(seats))).append('\t');
+        }
+        return line.append('\n').toString();
+    }
+
     /**
      * Gets the list of passengers.
      *
@@ -291,23 +706,69 @@ public class AirplaneSeats {
      * @return a list of reserved passengers.
      */
     public ArrayList<Passenger> getAllReservedPas(boolean isEconomy) {
-        int start = INDEX_OF_ECO_START;
-        int end = airplaneSeats.size();
-
-        if (!isEconomy) {
-            start = INDEX_OF_FIRST_START;
-            end = NUM_ROWS_OF_FIRST_CLASS;
-        }
         ArrayList<Passenger> pasList = new ArrayList<>();
+        forEachReservedPas(isEconomy, pasList::add);
+        return pasList;
+    }
+
+    /**
+     * Visits the reserved passengers of a class in row order without building a list. Each row
+     * is locked while its passengers are visited, so the visitor should not wait on anything.
+     *
+     * @param isEconomy if it is economy or first class.
+     * @param visitor   called with each passenger, an exception it throws ends the visit
+     */
+    public void forEachReservedPas(boolean isEconomy, Consumer<Passenger> visitor) {
+        int start = layout.getStartIndex(isEconomy);
+        int end = layout.getEndIndex(isEconomy);
 
         for (int i = start; i < end; i++) {
             SeatRow row = airplaneSeats.get(i);
-            ArrayList<Passenger> tempList = row.getPasList();
-            if (tempList != null) {
-                pasList.addAll(tempList);
+            lockRow(i);
+            try {
+                row.forEachPassenger(visitor);
+            } finally {
+                unlockRow(i);
             }
         }
-        return pasList;
+    }
+
+    /**
+     * Takes the rows changed since the last call and marks them as saved.
+     * @return the changed seat rows.
+     */
+    public ArrayList<SeatRow> takeDirtyRows() {
+        ArrayList<SeatRow> rows = new ArrayList<>();
+        for (SeatRow row : airplaneSeats) {
+            if (row.takeDirty()) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Marks rows as changed again, e.g. when they could not be saved.
+     * @param rows the seat rows.
+     */
+    public void markRowsDirty(List<SeatRow> rows) {
+        for (SeatRow row : rows) {
+            row.markDirty();
+        }
+    }
+
+    /**
+     * Checks if a seat exists on the airplane and nobody is sitting on it.
+     * @param rowNum a row number.
+     * @param seatCol a seat column.
+     * @return true if the seat is vacant.
+     */
+    public boolean isSeatVacant(int rowNum, int seatCol) {
+        int index = layout.getRowIndex(rowNum);
+        if (index < 0 || seatCol < 0 || seatCol >= layout.getCabin(index).getSeatsInRow()) {
+            return false;
+        }
+        return (airplaneSeats.get(index).getFreeSeats() & (1L << seatCol)) != 0;
     }
 
     /**
@@ -0,0 +1,150 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A notification sink that hands notifications to a background thread, which formats them
+ * and prints them in batches. Booking threads only enqueue a small event; they wait only
+ * when the queue is full.
+ */
+public class AsyncConsoleNotificationSink implements NotificationSink {
+    public static final int DEFAULT_QUEUE_SIZE = 64 * 1024;
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final PrintStream out;
+    private final ArrayBlockingQueue<Notification> queue;
+    private final Thread writer;
+    private volatile boolean isClosed = false;
+
+    /**
+     * One notification waiting to be printed.
+     */
+    private static class Notification {
+        private final boolean isReserved;
+        private final int row;
+        private final int col;
+        private final String name;
+        private final CountDownLatch delivered;
+
+        /**
+         * Constructor of the class
+         *
+         * @param isReserved true for a reservation, false for a cancellation
+         * @param row        the seat row
+         * @param col        the seat column
+         * @param name       the passenger name
+         * @param delivered  counted down when everything before is printed, or null
+         */
+        private Notification(boolean isReserved, int row, int col, String name, CountDownLatch delivered) {
+            this.isReserved = isReserved;
+            this.row = row;
+            this.col = col;
+            this.name = name;
+            this.delivered = delivered;
+        }
+    }
+
+    /**
+     * Constructor of the class printing to the standard output.
+     */
+    public AsyncConsoleNotificationSink() {
+        this(System.out, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param out       the stream to print to
+     * @param queueSize number of notifications that can wait before booking threads are held up
+     */
+    public AsyncConsoleNotificationSink(PrintStream out, int queueSize) {
+        this.out = out;
+        queue = new ArrayBlockingQueue<>(queueSize);
+        writer = new Thread(this::writeNotifications, "notification-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void seatReserved(int row, int col, String name) {
+        enqueue(new Notification(true, row, col, name, null));
+    }
+
+    @Override
+    public void seatCancelled(int row, int col, String name) {
+        enqueue(new Notification(false, row, col, name, null));
+    }
+
+    @Override
+    public void flush() {
+        CountDownLatch delivered = new CountDownLatch(1);
+        enqueue(new Notification(false, 0, 0, null, delivered));
+        try {
+            delivered.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (isClosed) {
+            return;
+        }
+        flush();
+        isClosed = true;
+        writer.interrupt();
+    }
+
+    /**
+     * Puts a notification on the queue, waiting while the queue is full.
+     *
+     * @param notification the notification
+     */
+    private void enqueue(Notification notification) {
+        if (isClosed) {
+            throw new IllegalStateException("The notification sink is closed");
+        }
+        try {
+            queue.put(notification);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes notifications off the queue in batches and prints every batch with a single write.
+     */
+    private void writeNotifications() {
+        ArrayList<Notification> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        StringBuilder text = new StringBuilder();
+        while (!isClosed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            for (Notification notification : batch) {
+                if (notification.delivered != null) {
+                    continue;
+                }
+                if (notification.isReserved) {
+                    ConsoleNotificationSink.appendReservation(text, notification.row, notification.col, notification.name);
+                } else {
+                    ConsoleNotificationSink.appendCancellation(text, notification.row, notification.col, notification.name);
+                }
+            }
+            out.print(text);
+            out.flush();
+            for (Notification notification : batch) {
+                if (notification.delivered != null) {
+                    notification.delivered.countDown();
+                }
+            }
+            text.setLength(0);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Books seats on the flights of a FlightInventory without blocking the caller. Every call returns
+ * a CompletableFuture at once, so a client can have many requests in flight.
+ * <p>
+ * Flights are sharded across a fixed set of lanes. Every lane is one thread owning a bounded command
+ * ring that callers offer to. The thread takes up to a batch of commands at a time, applies the
+ * commands of each flight together in the order they came, syncs the journal of the flight once for
+ * the whole batch and completes the callers afterwards. The seats of a flight thus have a single
+ * writer, so the inventory should book them SINGLE_THREADED and be used only through this service.
+ * Requests for flights on different lanes run in parallel.
+ */
+public class AsyncReservationService {
+    public static final int DEFAULT_NUM_OF_LANES = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_RING_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final FlightInventory inventory;
+    private final Lane[] lanes;
+    private final int batchSize;
+
+    /**
+     * One request waiting in a lane, with its outcome once applied.
+     *
+     * @param <T> the result type of the request
+     */
+    private static class Command<T> {
+        private final String flightId;
+        private final Function<ReservationManager, T> operation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Throwable failure;
+
+        /**
+         * Constructor of the class
+         *
+         * @param flightId  the flight id
+         * @param operation the operation to run on the flight
+         */
+        private Command(String flightId, Function<ReservationManager, T> operation) {
+            this.flightId = flightId;
+            this.operation = operation;
+        }
+
+        /**
+         * Runs the operation and keeps its outcome.
+         *
+         * @param manager the reservations of the flight
+         */
+        private void apply(ReservationManager manager) {
+            try {
+                result = operation.apply(manager);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * Completes the caller with the outcome.
+         */
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    /**
+     * The thread owning the flights of one lane and the ring its commands wait in.
+     */
+    private class Lane extends Thread {
+        private final CommandRing<Command<?>> ring;
+        private final LinkedHashMap<String, ArrayList<Command<?>>> commandsOfFlights = new LinkedHashMap<>();
+        private final ArrayList<String> notDurableFlights = new ArrayList<>();
+        private volatile boolean isSleeping = false;
+        private volatile boolean isStopped = false;
+        private volatile long numOfBatches = 0;
+        private volatile long numOfCommands = 0;
+        private volatile int maxBatchSize = 0;
+
+        /**
+         * Constructor of the class
+         *
+         * @param laneNum      the number of the lane
+         * @param ringCapacity the most commands waiting in the lane
+         */
+        private Lane(int laneNum, int ringCapacity) {
+            super("flight-lane-" + laneNum);
+            ring = new CommandRing<>(ringCapacity);
+            setDaemon(true);
+        }
+
+        /**
+         * Applies batches of commands until stopped and the ring is empty, sleeping while it is empty.
+         */
+        @Override
+        public void run() {
+            ArrayList<Command<?>> batch = new ArrayList<>(batchSize);
+            while (true) {
+                Command<?> command;
+                while (batch.size() < batchSize && (command = ring.poll()) != null) {
+                    batch.add(command);
+                }
+                if (batch.isEmpty()) {
+                    if (isStopped && ring.isEmpty()) {
+                        return;
+                    }
+                    isSleeping = true;
+                    if (ring.isEmpty() && !isStopped) {
+                        LockSupport.park(this);
+                    }
+                    isSleeping = false;
+                    continue;
+                }
+                applyBatch(batch);
+                numOfBatches++;
+                numOfCommands += batch.size();
+                maxBatchSize = Math.max(maxBatchSize, batch.size());
+                batch.clear();
+            }
+        }
+
+        /**
+         * Applies the commands of a batch flight by flight and then completes their callers.
+         *
+         * @param batch the commands in the order they came
+         */
+        private void applyBatch(ArrayList<Command<?>> batch) {
+            for (Command<?> command : batch) {
+                commandsOfFlights.computeIfAbsent(command.flightId, flightId -> new ArrayList<>()).add(command);
+            }
+            for (ArrayList<Command<?>> commands : commandsOfFlights.values()) {
+                try {
+                    inventory.execute(commands.get(0).flightId, manager -> applyToFlight(manager, commands));
+                } catch (RuntimeException e) {
+                    for (Command<?> command : commands) {
+                        command.failure = e;
+                    }
+                }
+            }
+            commandsOfFlights.clear();
+            for (Command<?> command : batch) {
+                command.complete();
+            }
+            for (String flightId : notDurableFlights) {
+                try {
+                    inventory.save(flightId);
+                } catch (RuntimeException e) {
+                    // the journal keeps refusing bookings until a later save of the flight succeeds
+                }
+            }
+            notDurableFlights.clear();
+        }
+
+        /**
+         * Applies the commands of one flight, syncing the records they append to its journal once
+         * after all of them. If the sync fails the results still stand, since their changes are
+         * in the reservations, but the records are cut off the journal, which refuses bookings
+         * until the flight is saved; the flight is saved once the callers are completed.
+         *
+         * @param manager  the reservations of the flight
+         * @param commands the commands of the flight in the order they came
+         * @return nothing
+         */
+        private Void applyToFlight(ReservationManager manager, ArrayList<Command<?>> commands) {
+            ReservationJournal journal = manager.getJournal();
+            if (journal != null) {
+                journal.beginDeferredSync();
+            }
+            try {
+                for (Command<?> command : commands) {
+                    command.apply(manager);
+                }
+            } finally {
+                if (journal != null) {
+                    try {
+                        journal.endDeferredSync();
+                    } catch (IOException e) {
+                        notDurableFlights.add(commands.get(0).flightId);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param inventory  the flights to book
+     * @param numOfLanes number of threads the flights are sharded across
+     */
+    public AsyncReservationService(FlightInventory inventory, int numOfLanes) {
+        this(inventory, numOfLanes, DEFAULT_RING_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param inventory    the flights to book
+     * @param numOfLanes   number of threads the flights are sharded across
+     * @param ringCapacity the most commands waiting in a lane before new ones are rejected
+     * @param batchSize    the most commands a lane applies before completing their callers
+     */
+    public AsyncReservationService(FlightInventory inventory, int numOfLanes, int ringCapacity, int batchSize) {
+        if (numOfLanes <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Number of lanes and batch size must be positive");
+        }
+        this.inventory = inventory;
+        this.batchSize = batchSize;
+        lanes = new Lane[numOfLanes];
+        for (int i = 0; i < numOfLanes; i++) {
+            lanes[i] = new Lane(i, ringCapacity);
+            lanes[i].start();
+        }
+    }
+
+    /**
+     * Reserves a seat for a passenger.
+     *
+     * @param flightId  the flight id
+     * @param name      the passenger's name
+     * @param isEconomy true if sitting in economy
+     * @param seatType  the type of seat
+     * @return the result, NAME_TAKEN if the passenger already has a seat on the flight
+     */
+    public CompletableFuture<ReservationResult> reserveIndividual(String flightId, String name, boolean isEconomy,
+                                                                  SeatType seatType) {
+        return submit(flightId, manager -> manager.makeIndividualReservation(name, isEconomy, seatType));
+    }
+
+    /**
+     * Reserves adjacent seats for a group.
+     *
+     * @param flightId  the flight id
+     * @param gName     the name of the group
+     * @param isEconomy true if sitting in economy
+     * @param names     the names of the passengers of the group
+     * @return the result, NAME_TAKEN if the group already has seats on the flight
+     */
+    public CompletableFuture<ReservationResult> reserveGroup(String flightId, String gName, boolean isEconomy,
+                                                             String[] names) {
+        return submit(flightId, manager -> manager.makeGroupReservation(names, gName, isEconomy));
+    }
+
+    /**
+     * Cancels the reservation of a passenger or group.
+     *
+     * @param flightId the flight id
+     * @param name     the name of the passenger or group
+     * @param isGroup  true for a group
+     * @return the result, NOT_FOUND if the name has no reservation on the flight
+     */
+    public CompletableFuture<ReservationResult> cancel(String flightId, String name, boolean isGroup) {
+        return submit(flightId, manager -> manager.cancel(name, isGroup));
+    }
+
+    /**
+     * Gets the seating availability chart of a flight.
+     *
+     * @param flightId  the flight id
+     * @param isEconomy true for economy
+     * @return the chart
+     */
+    public CompletableFuture<String> getAvailabilityList(String flightId, boolean isEconomy) {
+        return submit(flightId, manager -> manager.getAvailabilityList(isEconomy));
+    }
+
+    /**
+     * Gets the manifest of a flight.
+     *
+     * @param flightId  the flight id
+     * @param isEconomy true for economy
+     * @return the manifest
+     */
+    public CompletableFuture<String> getManifestList(String flightId, boolean isEconomy) {
+        return submit(flightId, manager -> manager.getManifestList(isEconomy));
+    }
+
+    /**
+     * Queues an operation on the lane of a flight.
+     *
+     * @param flightId  the flight id
+     * @param operation the operation
+     * @param <T>       the result type of the operation
+     * @return the result, completed exceptionally if the flight id is invalid, the flight cannot be loaded
+     * or the lane is full or shut down
+     */
+    private <T> CompletableFuture<T> submit(String flightId, Function<ReservationManager, T> operation) {
+        if (!FlightInventory.isValidFlightId(flightId)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid flight id: " + flightId));
+        }
+        int hash = flightId.hashCode();
+        hash ^= (hash >>> 16);
+        Lane lane = lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+        Command<T> command = new Command<>(flightId, operation);
+        if (lane.isStopped || !lane.ring.offer(command)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    lane.isStopped ? "The service is shut down" : "Too many requests waiting for " + lane.getName()));
+        }
+        if (lane.isSleeping) {
+            LockSupport.unpark(lane);
+        }
+        return command.future;
+    }
+
+    /**
+     * Gets the number of commands waiting in all lanes.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.ring.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the number of batches applied by all lanes.
+     *
+     * @return the number of batches
+     */
+    public long getNumOfBatches() {
+        long numOfBatches = 0;
+        for (Lane lane : lanes) {
+            numOfBatches += lane.numOfBatches;
+        }
+        return numOfBatches;
+    }
+
+    /**
+     * Gets the average number of commands in a batch.
+     *
+     * @return the average batch size, 0 before the first batch
+     */
+    public double getAverageBatchSize() {
+        long numOfCommands = 0;
+        for (Lane lane : lanes) {
+            numOfCommands += lane.numOfCommands;
+        }
+        long numOfBatches = getNumOfBatches();
+        return (numOfBatches == 0) ? 0 : (double) numOfCommands / numOfBatches;
+    }
+
+    /**
+     * Gets the largest number of commands in a batch.
+     *
+     * @return the largest batch size
+     */
+    public int getMaxBatchSize() {
+        int max = 0;
+        for (Lane lane : lanes) {
+            max = Math.max(max, lane.maxBatchSize);
+        }
+        return max;
+    }
+
+    /**
+     * Stops taking requests and waits for the queued ones to finish.
+     *
+     * @param timeoutMillis the longest time to wait
+     * @return true if all requests finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeoutMillis) throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.isStopped = true;
+            LockSupport.unpark(lane);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Lane lane : lanes) {
+            lane.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (lane.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Runs reservation commands from a feed without prompts and counts the results.
+ * <p>
+ * Every line of the feed is one command with its fields separated by '|':
+ * <pre>
+ * P|name|F or E|W, C or A       reserve a seat for a passenger
+ * G|group name|F or E|n1,n2,... reserve adjacent seats for a group
+ * C|I|name                      cancel the reservation of a passenger
+ * C|G|group name                cancel the reservation of a group
+ * A|F or E                      print the seating availability chart
+ * M|F or E                      print the manifest
+ * S                             print the metrics
+ * </pre>
+ * Empty lines and lines starting with '#' are skipped. Spaces around the names of a group are dropped.
+ */
+public class BatchProcessor {
+    private static final String SEPARATOR = "\\|";
+    private static final String NAME_SEPARATOR = ",";
+    private static final String ADD_INDIVIDUAL = "P";
+    private static final String ADD_GROUP = "G";
+    private static final String CANCEL_REQUEST = "C";
+    private static final String CANCEL_INDIVIDUAL = "I";
+    private static final String CANCEL_GROUP = "G";
+    private static final String AVAILABILITY_CHART = "A";
+    private static final String MANIFEST = "M";
+    private static final String STATISTICS = "S";
+    private static final String ECONOMY_CLASS = "E";
+    private static final String FIRST_CLASS = "F";
+    private static final String COMMENT = "#";
+    private static final String[] OPERATIONS = {ADD_INDIVIDUAL, ADD_GROUP, CANCEL_REQUEST, AVAILABILITY_CHART, MANIFEST,
+            STATISTICS};
+    private static final String[] OPERATION_NAMES = {"passenger", "group", "cancel", "availability", "manifest",
+            "statistics"};
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final ReservationManager management;
+    private final PrintWriter out;
+    private final long[] numOfDone = new long[OPERATIONS.length];
+    private final long[] numOfFailed = new long[OPERATIONS.length];
+    private long numOfInvalid = 0;
+    private long nanos = 0;
+
+    /**
+     * Constructor of the class
+     *
+     * @param management the reservations the commands run on
+     * @param out        where the charts, the manifests and the summary are printed
+     */
+    public BatchProcessor(ReservationManager management, PrintWriter out) {
+        this.management = management;
+        this.out = out;
+    }
+
+    /**
+     * Runs all commands of a feed.
+     *
+     * @param in the feed
+     * @throws IOException if the feed cannot be read
+     */
+    public void process(BufferedReader in) throws IOException {
+        long startTime = System.nanoTime();
+        String line;
+        int lineNum = 0;
+        while ((line = in.readLine()) != null) {
+            lineNum++;
+            if (line.isEmpty() || line.startsWith(COMMENT)) {
+                continue;
+            }
+            String[] fields = line.split(SEPARATOR);
+            int operation = findOperation(fields[0]);
+            if (operation < 0 || !isValid(fields)) {
+                reportInvalid(lineNum, line);
+                continue;
+            }
+            if (runCommand(fields)) {
+                numOfDone[operation]++;
+            } else {
+                numOfFailed[operation]++;
+            }
+        }
+        nanos += System.nanoTime() - startTime;
+        out.flush();
+    }
+
+    /**
+     * Finds the index of an operation.
+     *
+     * @param command the command letter
+     * @return the index or -1 if the command is unknown
+     */
+    private static int findOperation(String command) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equals(command)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a command has the right fields.
+     *
+     * @param fields the fields of the command
+     * @return true if the command can run
+     */
+    private static boolean isValid(String[] fields) {
+        switch (fields[0]) {
+            case ADD_INDIVIDUAL:
+                return fields.length == 4 && isServiceClass(fields[2]) && !fields[1].isEmpty() && !fields[3].isEmpty();
+            case ADD_GROUP:
+                if (fields.length != 4 || !isServiceClass(fields[2]) || fields[1].isEmpty()) {
+                    return false;
+                }
+                for (String name : splitNames(fields[3])) {
+                    if (name.isEmpty()) {
+                        return false;
+                    }
+                }
+                return true;
+            case STATISTICS:
+                return fields.length == 1;
+            case CANCEL_REQUEST:
+                return fields.length == 3 && (fields[1].equals(CANCEL_INDIVIDUAL) || fields[1].equals(CANCEL_GROUP));
+            default:
+                return fields.length == 2 && isServiceClass(fields[1]);
+        }
+    }
+
+    /**
+     * Splits the names of a group and drops the spaces around them.
+     *
+     * @param names the comma separated names
+     * @return the names
+     */
+    private static String[] splitNames(String names) {
+        String[] split = names.split(NAME_SEPARATOR, -1);
+        for (int i = 0; i < split.length; i++) {
+            split[i] = split[i].trim();
+        }
+        return split;
+    }
+
+    /**
+     * Checks if a field is a service class.
+     *
+     * @param field the field
+     * @return true for first or economy class
+     */
+    private static boolean isServiceClass(String field) {
+        return field.equals(FIRST_CLASS) || field.equals(ECONOMY_CLASS);
+    }
+
+    /**
+     * Runs a valid command.
+     *
+     * @param fields the fields of the command
+     * @return true if the command is done, false if it cannot be done, e.g. the name is taken
+     */
+    private boolean runCommand(String[] fields) {
+        switch (fields[0]) {
+            case ADD_INDIVIDUAL:
+                return management.makeIndividualReservation(fields[1], fields[2].equals(ECONOMY_CLASS),
+                        SeatType.fromCode(fields[3])).isSuccessful();
+            case ADD_GROUP:
+                return management.makeGroupReservation(splitNames(fields[3]), fields[1], fields[2].equals(ECONOMY_CLASS))
+                        .isSuccessful();
+            case CANCEL_REQUEST:
+                return management.cancel(fields[2], fields[1].equals(CANCEL_GROUP)).isSuccessful();
+            case STATISTICS:
+                out.print(management.getMetrics().dump());
+                return true;
+            case AVAILABILITY_CHART:
+                out.println(management.getAvailabilityList(fields[1].equals(ECONOMY_CLASS)));
+                return true;
+            default:
+                try {
+                    management.writeManifest(fields[1].equals(ECONOMY_CLASS), out);
+                } catch (IOException e) {
+                    return false;
+                }
+                out.println();
+                return true;
+        }
+    }
+
+    /**
+     * Counts an invalid line and prints the first few.
+     *
+     * @param lineNum the line number
+     * @param line    the line
+     */
+    private void reportInvalid(int lineNum, String line) {
+        if (++numOfInvalid <= MAX_REPORTED_ERRORS) {
+            out.printf("Line %d: cannot recognize the command \"%s\"%n", lineNum, line);
+        }
+    }
+
+    /**
+     * Prints the number of done and failed commands per operation and the throughput of the
+     * commands run, which leaves out invalid lines.
+     */
+    public void printSummary() {
+        long total = 0;
+        out.printf("%-14s %12s %12s%n", "command", "done", "failed");
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            out.printf("%-14s %12d %12d%n", OPERATION_NAMES[i], numOfDone[i], numOfFailed[i]);
+            total += numOfDone[i] + numOfFailed[i];
+        }
+        out.printf("%-14s %12d%n", "invalid", numOfInvalid);
+        double seconds = Math.max(nanos, 1) / 1e9;
+        out.printf("%d commands in %.3f s, %.0f commands/s%n", total, seconds, total / seconds);
+        out.flush();
+    }
+}
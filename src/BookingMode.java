@@ -0,0 +1,22 @@
+/**
+ * How the seats of an airplane are protected against concurrent bookings.
+ */
+public enum BookingMode {
+    /**
+     * Only one thread at a time books seats on the airplane.
+     */
+    SINGLE_THREADED,
+
+    /**
+     * Many threads book seats at the same time. An individual booking locks only its seat row,
+     * a group booking locks the rows of its service class in row order.
+     */
+    ROW_LOCKING,
+
+    /**
+     * Many threads book seats at the same time without locks. Seats are claimed with
+     * compare-and-set on the free seat bitmask of their row, and a booking that loses a race
+     * moves on to the next eligible row.
+     */
+    LOCK_FREE
+}
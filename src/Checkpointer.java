@@ -0,0 +1,258 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the reservations of a flight on disk by checkpointing the seat rows changed since the
+ * last checkpoint into a page file, so the cost of saving grows with the bookings made and not
+ * with the size of the airplane.
+ * <p>
+ * Bookings between checkpoints are recorded in journal segments. A checkpoint briefly holds off
+ * bookings to take the changed rows and switch to a new journal segment, then writes the pages
+ * and commits them with the number of that segment. Recovery reads the committed pages and
+ * replays the journal segments from the committed one on.
+ */
+public class Checkpointer {
+    public static final long DEFAULT_PERIOD_MILLIS = 1000;
+    private static final String PAGE_FILE_SUFFIX = ".pages";
+    private static final String JOURNAL_SEGMENT_SUFFIX = ".journal.";
+
+    private final File baseFile;
+    private final ReservationManager manager;
+    private final AircraftLayout layout;
+    private final RowPageFile pageFile;
+    private ReservationJournal journal;
+    private long journalSegment;
+    private ScheduledExecutorService scheduler;
+    private boolean isClosed = false;
+    private boolean isSyncOnCommit = true;
+
+    /**
+     * Constructor of the class. Opens the page file of a flight; call recover before
+     * bookings are made.
+     *
+     * @param baseFile the flight file the page file and journal segments are named after
+     * @param manager  the reservations of the flight
+     * @throws IOException if the page file cannot be opened
+     */
+    public Checkpointer(File baseFile, ReservationManager manager) throws IOException {
+        this.baseFile = baseFile;
+        this.manager = manager;
+        layout = manager.getLayout();
+        pageFile = new RowPageFile(new File(baseFile.getPath() + PAGE_FILE_SUFFIX), layout.getNumOfRows(),
+                RowPageFile.getPageSize(Math.max(layout.getWidestRow(false), layout.getWidestRow(true))));
+    }
+
+    /**
+     * Checks if the page file holds a committed checkpoint. If not, the reservations should be
+     * restored from another file before recover is called.
+     *
+     * @return true if there is a committed checkpoint
+     */
+    public boolean hasCheckpoint() {
+        return pageFile.getCheckpointNum() > 0;
+    }
+
+    /**
+     * Restores the reservations from the last checkpoint, replays the journal segments made
+     * after it and starts recording bookings in a new journal segment.
+     *
+     * @return the number of journal records applied
+     * @throws IOException if the page file or a journal segment cannot be read
+     */
+    public synchronized int recover() throws IOException {
+        if (hasCheckpoint()) {
+            manager.restorePages(pageFile);
+        }
+        int numOfApplied = 0;
+        long lastSegment = pageFile.getJournalSegment();
+        for (Map.Entry<Long, File> segment : listJournalSegments().entrySet()) {
+            if (segment.getKey() >= pageFile.getJournalSegment()) {
+                ReservationJournal replayed = new ReservationJournal(segment.getValue(), false);
+                numOfApplied += replayed.replay(manager);
+                replayed.close();
+                lastSegment = segment.getKey();
+            }
+        }
+        journalSegment = lastSegment + 1;
+        journal = new ReservationJournal(getJournalSegmentFile(journalSegment), isSyncOnCommit);
+        manager.setJournal(journal);
+        manager.enableCheckpoints();
+        return numOfApplied;
+    }
+
+    /**
+     * Sets if every booking is synced to the disk before it is reported as done. Without it,
+     * bookings are synced by the next checkpoint, so a crash may lose the bookings since then.
+     *
+     * @param isSyncOnCommit true to sync every booking
+     */
+    public synchronized void setSyncOnCommit(boolean isSyncOnCommit) {
+        this.isSyncOnCommit = isSyncOnCommit;
+        if (journal != null) {
+            journal.setSyncOnCommit(isSyncOnCommit);
+        }
+    }
+
+    /**
+     * Starts checkpointing in the background.
+     *
+     * @param periodMillis time between the end of a checkpoint and the start of the next one
+     */
+    public synchronized void start(long periodMillis) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                // counted as a failed checkpoint in the metrics; the rows are written by the next one
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the seat rows changed since the last checkpoint to the page file and deletes the
+     * journal segments it covers. With no rows changed, the journal segments replayed by recover
+     * are still deleted, so reopening an unchanged flight does not leave them behind.
+     * Does nothing before recover or after close.
+     *
+     * @return the number of rows written
+     * @throws IOException if the checkpoint cannot be written, which is recorded in the metrics as a
+     *                     failed checkpoint; the rows are written by the next one
+     */
+    public synchronized int checkpoint() throws IOException {
+        if (isClosed || journal == null) {
+            return 0;
+        }
+        long startTime = manager.getMetrics().startTimer();
+        ArrayList<SeatRow> rows;
+        ArrayList<byte[]> pages = new ArrayList<>();
+        ReservationJournal previous = journal;
+        long nextSegment = journalSegment + 1;
+
+        manager.lockUpdates();
+        try {
+            rows = manager.takeDirtyRows();
+            if (!rows.isEmpty()) {
+                try {
+                    for (SeatRow row : rows) {
+                        pages.add(pageFile.encodeRow(row));
+                    }
+                    journal = new ReservationJournal(getJournalSegmentFile(nextSegment), isSyncOnCommit);
+                } catch (IOException e) {
+                    manager.markRowsDirty(rows);
+                    manager.getMetrics().record(ReservationMetrics.Operation.CHECKPOINT, startTime, ReservationResult.Status.FAILED);
+                    throw e;
+                }
+                journalSegment = nextSegment;
+                manager.setJournal(journal);
+            }
+        } finally {
+            manager.unlockUpdates();
+        }
+        if (rows.isEmpty()) {
+            // the pages hold everything before the current segment, which may be all that is left
+            if (pageFile.getJournalSegment() < journalSegment) {
+                try {
+                    pageFile.commit(journalSegment);
+                } catch (IOException e) {
+                    manager.getMetrics().record(ReservationMetrics.Operation.CHECKPOINT, startTime, ReservationResult.Status.FAILED);
+                    throw e;
+                }
+                deleteJournalSegmentsBefore(journalSegment);
+            }
+            return 0;
+        }
+        previous.close();
+
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                pageFile.writeRow(layout.getRowIndex(rows.get(i).getRowNumber()), pages.get(i));
+            }
+            pageFile.commit(nextSegment);
+        } catch (IOException e) {
+            manager.markRowsDirty(rows);
+            manager.getMetrics().record(ReservationMetrics.Operation.CHECKPOINT, startTime, ReservationResult.Status.FAILED);
+            throw e;
+        }
+        deleteJournalSegmentsBefore(nextSegment);
+        manager.getMetrics().record(ReservationMetrics.Operation.CHECKPOINT, startTime);
+        return rows.size();
+    }
+
+    /**
+     * Stops checkpointing in the background, writes a last checkpoint and closes the files.
+     *
+     * @throws IOException if the last checkpoint cannot be written
+     */
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        try {
+            checkpoint();
+        } finally {
+            isClosed = true;
+            if (journal != null) {
+                journal.close();
+            }
+            pageFile.close();
+        }
+    }
+
+    /**
+     * Gets the file of a journal segment.
+     *
+     * @param segment the number of the segment
+     * @return the file
+     */
+    private File getJournalSegmentFile(long segment) {
+        return new File(baseFile.getPath() + JOURNAL_SEGMENT_SUFFIX + segment);
+    }
+
+    /**
+     * Deletes the journal segments a committed checkpoint covers.
+     *
+     * @param segment the first segment the checkpoint does not cover
+     */
+    private void deleteJournalSegmentsBefore(long segment) {
+        for (Map.Entry<Long, File> older : listJournalSegments().headMap(segment).entrySet()) {
+            older.getValue().delete();
+        }
+    }
+
+    /**
+     * Finds the journal segments of the flight on disk.
+     *
+     * @return the segment files by segment number
+     */
+    private TreeMap<Long, File> listJournalSegments() {
+        TreeMap<Long, File> segments = new TreeMap<>();
+        File dir = baseFile.getAbsoluteFile().getParentFile();
+        String prefix = baseFile.getName() + JOURNAL_SEGMENT_SUFFIX;
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix));
+        if (files == null) {
+            return segments;
+        }
+        for (File file : files) {
+            try {
+                segments.put(Long.parseLong(file.getName().substring(prefix.length())), file);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+        }
+        return segments;
+    }
+}
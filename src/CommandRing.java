@@ -0,0 +1,87 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded queue that many threads offer to and one thread polls from, backed by a ring of slots.
+ * Producers claim a slot by moving the tail with compare-and-set and then fill it; the consumer
+ * empties the slot at the head and moves the head on. Nothing is allocated per element.
+ *
+ * @param <E> the type of the elements
+ */
+public class CommandRing<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Constructor of the class
+     *
+     * @param capacity the most elements the ring holds, rounded up to a power of two
+     */
+    public CommandRing(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element at the tail. Can be called by any thread.
+     *
+     * @param element the element, not null
+     * @return false if the ring is full
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long claimed = tail.get();
+            if (claimed - head.get() >= slots.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(claimed, claimed + 1)) {
+                slots.set((int) claimed & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes the element at the head. Must only be called by the consuming thread.
+     *
+     * @return the element, or null if the ring is empty or the next element is not filled in yet
+     */
+    public E poll() {
+        long next = head.get();
+        int index = (int) next & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head.lazySet(next + 1);
+        return element;
+    }
+
+    /**
+     * Checks if no element is claimed or waiting in the ring.
+     *
+     * @return true if the ring is empty
+     */
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * Gets the number of elements claimed or waiting in the ring.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
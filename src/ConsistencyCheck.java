@@ -0,0 +1,241 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks that concurrent bookings never give one seat to two passengers, in the row-locking
+ * and the lock-free modes. Every thread keeps booking passengers and groups of two to four in
+ * both classes and cancels its oldest booking once it holds its share of the airplane, so rows
+ * fill up, empty and are raced for again. When the threads are done, the bookings they hold
+ * must have one seat each, and the manifest and the vacant seat counts must match them.
+ * <p>
+ * Usage: java ConsistencyCheck [operations per thread] [layout file]
+ * <p>
+ * Exits with status 1 if a check fails.
+ */
+public class ConsistencyCheck {
+    private static final int[] THREAD_COUNTS = {2, 8, 32};
+    private static final BookingMode[] MODES = {BookingMode.ROW_LOCKING, BookingMode.LOCK_FREE};
+    private static final SeatType[] SEAT_TYPES = SeatType.values();
+    private static final int GROUP_EVERY = 5;
+    private static final int MAX_GROUP_SIZE = 4;
+
+    private final AircraftLayout layout;
+    private final int opsPerThread;
+
+    /**
+     * Constructor of the class
+     *
+     * @param layout       the seat layout of the airplane
+     * @param opsPerThread how many bookings and cancellations every thread makes
+     */
+    public ConsistencyCheck(AircraftLayout layout, int opsPerThread) {
+        this.layout = layout;
+        this.opsPerThread = opsPerThread;
+    }
+
+    /**
+     * One booking held by a checking thread, either a passenger or a group.
+     */
+    private static class Booking {
+        private final String name;
+        private final boolean isGroup;
+        private final List<Passenger> passengers;
+
+        /**
+         * Constructor of the class
+         *
+         * @param name       the passenger or group name
+         * @param isGroup    true for a group
+         * @param passengers the booked passengers
+         */
+        private Booking(String name, boolean isGroup, List<Passenger> passengers) {
+            this.name = name;
+            this.isGroup = isGroup;
+            this.passengers = passengers;
+        }
+    }
+
+    /**
+     * Runs the checking threads on one airplane and checks the bookings they end up holding.
+     *
+     * @param mode         the booking mode of the airplane
+     * @param numOfThreads number of checking threads
+     * @return the failed checks, empty if all passed
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private List<String> run(BookingMode mode, int numOfThreads) throws InterruptedException {
+        ReservationManager manager = new ReservationManager(layout, mode);
+        int numOfSeats = layout.getNumOfSeats(false) + layout.getNumOfSeats(true);
+        int bookingsPerThread = Math.max(1, numOfSeats / (2 * numOfThreads));
+        List<ArrayDeque<Booking>> held = new ArrayList<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numOfThreads);
+
+        for (int t = 0; t < numOfThreads; t++) {
+            ArrayDeque<Booking> bookings = new ArrayDeque<>();
+            held.add(bookings);
+            String prefix = "t" + t + " ";
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        step(manager, bookings, prefix + i, i, bookingsPerThread);
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        start.countDown();
+        done.await();
+
+        List<String> failures = new ArrayList<>();
+        if (error.get() != null) {
+            failures.add("thread failed: " + error.get());
+        }
+        List<Booking> bookings = new ArrayList<>();
+        for (ArrayDeque<Booking> threadBookings : held) {
+            bookings.addAll(threadBookings);
+        }
+        checkBookings(manager, bookings, false, failures);
+        checkBookings(manager, bookings, true, failures);
+        return failures;
+    }
+
+    /**
+     * Makes one booking or cancellation for a checking thread.
+     *
+     * @param manager           the reservations of the airplane
+     * @param bookings          the bookings the thread holds
+     * @param name              a name not used before
+     * @param step              the number of the step
+     * @param bookingsPerThread how many bookings a thread holds before it cancels
+     */
+    private static void step(ReservationManager manager, ArrayDeque<Booking> bookings, String name, int step,
+                             int bookingsPerThread) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean isEconomy = random.nextBoolean();
+        if (bookings.size() >= bookingsPerThread) {
+            Booking booking = bookings.poll();
+            ReservationResult result = manager.cancel(booking.name, booking.isGroup);
+            if (!result.isSuccessful()) {
+                throw new IllegalStateException("cannot cancel " + booking.name + ": " + result.getStatus());
+            }
+        } else if (step % GROUP_EVERY == 0) {
+            String[] names = new String[2 + random.nextInt(MAX_GROUP_SIZE - 1)];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = name + " m" + i;
+            }
+            ReservationResult result = manager.makeGroupReservation(names, name, isEconomy);
+            if (result.isSuccessful()) {
+                bookings.add(new Booking(name, true, result.getPassengers()));
+            }
+        } else {
+            SeatType seatType = SEAT_TYPES[random.nextInt(SEAT_TYPES.length)];
+            ReservationResult result = manager.makeIndividualReservation(name, isEconomy, seatType);
+            if (result.isSuccessful()) {
+                bookings.add(new Booking(name, false, result.getPassengers()));
+            }
+        }
+    }
+
+    /**
+     * Checks the passengers of one class: every seat is given once, the manifest lists exactly
+     * the booked passengers and the booked and vacant seats add up to the seats of the class.
+     *
+     * @param manager   the reservations of the airplane
+     * @param bookings  the bookings the threads hold
+     * @param isEconomy the class to check
+     * @param failures  where the failed checks are added
+     */
+    private void checkBookings(ReservationManager manager, List<Booking> bookings, boolean isEconomy,
+                               List<String> failures) {
+        String className = isEconomy ? "economy" : "first class";
+        HashSet<Integer> seats = new HashSet<>();
+        HashSet<String> expected = new HashSet<>();
+        for (Booking booking : bookings) {
+            for (Passenger pas : booking.passengers) {
+                if (pas.isEconomy() != isEconomy) {
+                    continue;
+                }
+                Seat seat = pas.getSeat();
+                if (seat == null) {
+                    failures.add(className + ": " + pas.getName() + " has no seat");
+                    continue;
+                }
+                if (!seats.add(Seat.pack(seat.getRow(), seat.getCol()))) {
+                    failures.add(className + ": seat " + seat.getRow() + Seat.toColumnLetter(seat.getCol())
+                            + " is booked twice");
+                }
+                expected.add(seat.getRow() + "" + Seat.toColumnLetter(seat.getCol()) + ": " + pas.getName());
+            }
+        }
+
+        HashSet<String> listed = new HashSet<>();
+        for (String line : manager.getManifestList(isEconomy).split("\n")) {
+            // seat lines start with the row number, the header names the class
+            if (!line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                listed.add(line.trim());
+            }
+        }
+        for (String line : expected) {
+            if (!listed.contains(line)) {
+                failures.add(className + ": manifest misses " + line);
+            }
+        }
+        for (String line : listed) {
+            if (!expected.contains(line)) {
+                failures.add(className + ": manifest has " + line + " which is not booked");
+            }
+        }
+
+        int numOfVacant = manager.getVacantSeats(isEconomy);
+        if (numOfVacant + expected.size() != layout.getNumOfSeats(isEconomy)) {
+            failures.add(className + ": " + numOfVacant + " vacant and " + expected.size() + " booked seats of "
+                    + layout.getNumOfSeats(isEconomy));
+        }
+    }
+
+    /**
+     * Runs all thread counts for all modes and prints the result of every run.
+     *
+     * @return true if all checks passed
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public boolean runAll() throws InterruptedException {
+        System.out.printf("Layout %s, %d operations per thread%n", layout.getName(), opsPerThread);
+        boolean isPassed = true;
+        for (BookingMode mode : MODES) {
+            for (int numOfThreads : THREAD_COUNTS) {
+                List<String> failures = run(mode, numOfThreads);
+                System.out.printf("%-12s %3d threads: %s%n", mode, numOfThreads,
+                        failures.isEmpty() ? "OK" : "FAILED");
+                for (String failure : failures) {
+                    System.out.println("    " + failure);
+                }
+                isPassed &= failures.isEmpty();
+            }
+        }
+        return isPassed;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int opsPerThread = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        AircraftLayout layout = (args.length > 1) ? AircraftLayout.load(new File(args[1])) : AircraftLayout.DEFAULT;
+        if (!new ConsistencyCheck(layout, opsPerThread).runAll()) {
+            System.exit(1);
+        }
+    }
+}
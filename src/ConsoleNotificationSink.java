@@ -0,0 +1,64 @@
+import java.io.PrintStream;
+
+/**
+ * A notification sink that prints every notification right away, used by the interactive menu.
+ */
+public class ConsoleNotificationSink implements NotificationSink {
+    private final PrintStream out;
+
+    /**
+     * Constructor of the class printing to the standard output.
+     */
+    public ConsoleNotificationSink() {
+        this(System.out);
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param out the stream to print to
+     */
+    public ConsoleNotificationSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void seatReserved(int row, int col, String name) {
+        StringBuilder message = new StringBuilder();
+        appendReservation(message, row, col, name);
+        out.print(message);
+    }
+
+    @Override
+    public void seatCancelled(int row, int col, String name) {
+        StringBuilder message = new StringBuilder();
+        appendCancellation(message, row, col, name);
+        out.print(message);
+    }
+
+    /**
+     * Appends the message telling the user the reservation is successful.
+     *
+     * @param message the message to append to
+     * @param row     the seat row
+     * @param col     the seat column
+     * @param name    the passenger name
+     */
+    static void appendReservation(StringBuilder message, int row, int col, String name) {
+        message.append("Seat ").append(row).append(Seat.toColumnLetter(col))
+                .append(" is successfully reserved for ").append(name).append(".\n");
+    }
+
+    /**
+     * Appends the message telling the user the reservation was canceled.
+     *
+     * @param message the message to append to
+     * @param row     the seat row
+     * @param col     the seat column
+     * @param name    the passenger name
+     */
+    static void appendCancellation(StringBuilder message, int row, int col, String name) {
+        message.append("Successfully canceled seat ").append(row).append(Seat.toColumnLetter(col))
+                .append(" for ").append(name).append(".\n");
+    }
+}
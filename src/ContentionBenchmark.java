@@ -0,0 +1,255 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Measures booking throughput of one airplane shared by 1 to 64 threads, comparing a
+ * single-threaded airplane behind a global monitor with the row-locking and lock-free modes.
+ * Every thread keeps booking economy seats, one group of three every eighth booking,
+ * and cancels its oldest booking once it holds its share of the cabin.
+ * It then measures name lookups on a full flight, half of them for names that are not booked,
+ * comparing the name index of ReservationManager with the same names in a Hashtable.
+ * <p>
+ * Usage: java ContentionBenchmark [seconds per run] [layout file]
+ */
+public class ContentionBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final SeatType[] SEAT_TYPES = SeatType.values();
+    private static final String[] GROUP_NAMES = {"a", "b", "c"};
+    private static final int GROUP_EVERY = 8;
+    private static final double WARM_UP_SHARE = 0.5;
+
+    private final AircraftLayout layout;
+    private final long runMillis;
+
+    /**
+     * Constructor of the class
+     *
+     * @param layout    the seat layout of the airplane
+     * @param runMillis how long every measured run takes
+     */
+    public ContentionBenchmark(AircraftLayout layout, long runMillis) {
+        this.layout = layout;
+        this.runMillis = runMillis;
+    }
+
+    /**
+     * One booking held by a benchmark thread, either a passenger or a group.
+     */
+    private static class Booking {
+        private final Passenger pas;
+        private final GroupOfPassenger group;
+
+        /**
+         * Constructor of the class
+         *
+         * @param pas   the booked passenger or null
+         * @param group the booked group or null
+         */
+        private Booking(Passenger pas, GroupOfPassenger group) {
+            this.pas = pas;
+            this.group = group;
+        }
+    }
+
+    /**
+     * Runs the benchmark threads on one airplane and counts their bookings and cancellations.
+     *
+     * @param mode         the booking mode of the airplane
+     * @param isSerialized true to run every operation inside a global monitor
+     * @param numOfThreads number of booking threads
+     * @return operations per second
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private double run(BookingMode mode, boolean isSerialized, int numOfThreads) throws InterruptedException {
+        AirplaneSeats airplane = new AirplaneSeats(layout, mode);
+        int bookingsPerThread = Math.max(1, layout.getNumOfSeats(true) / (2 * numOfThreads * GROUP_NAMES.length));
+        return measure(numOfThreads, () -> {
+            ArrayDeque<Booking> bookings = new ArrayDeque<>();
+            int[] count = {0};
+            return () -> {
+                boolean isDone;
+                if (bookings.size() >= bookingsPerThread) {
+                    isDone = cancel(airplane, bookings.poll(), isSerialized);
+                } else if (++count[0] % GROUP_EVERY == 0) {
+                    GroupOfPassenger group = new GroupOfPassenger(GROUP_NAMES, "group", true);
+                    isDone = addGroup(airplane, group, isSerialized);
+                    if (isDone) {
+                        bookings.add(new Booking(null, group));
+                    }
+                } else {
+                    SeatType seatType = SEAT_TYPES[ThreadLocalRandom.current().nextInt(SEAT_TYPES.length)];
+                    Passenger pas = new Passenger("pas", true, seatType);
+                    isDone = addIndividual(airplane, pas, isSerialized);
+                    if (isDone) {
+                        bookings.add(new Booking(pas, null));
+                    }
+                }
+                return isDone;
+            };
+        });
+    }
+
+    /**
+     * Runs threads looking up random names in a name index.
+     *
+     * @param lookup       checks if a name is booked
+     * @param names        the names to look up
+     * @param numOfThreads number of lookup threads
+     * @return lookups per second
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private double runLookups(Predicate<String> lookup, String[] names, int numOfThreads) throws InterruptedException {
+        return measure(numOfThreads, () -> () -> {
+            lookup.test(names[ThreadLocalRandom.current().nextInt(names.length)]);
+            return true;
+        });
+    }
+
+    /**
+     * Runs threads that each repeat an operation and counts the operations done after a warm-up.
+     *
+     * @param numOfThreads number of threads
+     * @param newWorker    gives the operation of one thread, which returns true if it is done
+     * @return operations per second
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private double measure(int numOfThreads, Supplier<BooleanSupplier> newWorker) throws InterruptedException {
+        AtomicBoolean isMeasuring = new AtomicBoolean(false);
+        AtomicBoolean isRunning = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        CountDownLatch done = new CountDownLatch(numOfThreads);
+
+        for (int t = 0; t < numOfThreads; t++) {
+            BooleanSupplier worker = newWorker.get();
+            Thread thread = new Thread(() -> {
+                while (isRunning.get()) {
+                    if (worker.getAsBoolean() && isMeasuring.get()) {
+                        operations.increment();
+                    }
+                }
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread.sleep((long) (runMillis * WARM_UP_SHARE));
+        isMeasuring.set(true);
+        long startTime = System.nanoTime();
+        Thread.sleep(runMillis);
+        long ops = operations.sum();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        isRunning.set(false);
+        done.await();
+        return ops / seconds;
+    }
+
+    /**
+     * Books a passenger on the first eligible row, moving on to the next row when it loses a race.
+     *
+     * @param airplane     the airplane
+     * @param pas          the passenger
+     * @param isSerialized true to book inside a global monitor
+     * @return true if the passenger is booked
+     */
+    private static boolean addIndividual(AirplaneSeats airplane, Passenger pas, boolean isSerialized) {
+        if (isSerialized) {
+            synchronized (airplane) {
+                return addIndividual(airplane, pas, false);
+            }
+        }
+        SeatRow row;
+        while ((row = airplane.getAvailableSeatRow(true, pas.getSeatType())) != null) {
+            if (airplane.individualReservation(pas, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Books a group.
+     *
+     * @param airplane     the airplane
+     * @param group        the group
+     * @param isSerialized true to book inside a global monitor
+     * @return true if the group is booked
+     */
+    private static boolean addGroup(AirplaneSeats airplane, GroupOfPassenger group, boolean isSerialized) {
+        if (isSerialized) {
+            synchronized (airplane) {
+                return airplane.addGroup(group);
+            }
+        }
+        return airplane.addGroup(group);
+    }
+
+    /**
+     * Cancels a booking.
+     *
+     * @param airplane     the airplane
+     * @param booking      the booking
+     * @param isSerialized true to cancel inside a global monitor
+     * @return true if the booking is cancelled
+     */
+    private static boolean cancel(AirplaneSeats airplane, Booking booking, boolean isSerialized) {
+        if (isSerialized) {
+            synchronized (airplane) {
+                return cancel(airplane, booking, false);
+            }
+        }
+        return (booking.pas != null) ? airplane.removeIndividual(booking.pas) : airplane.removeGroup(booking.group);
+    }
+
+    /**
+     * Runs all thread counts for all modes and prints a table of operations per second.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void runAll() throws InterruptedException {
+        System.out.printf("Layout %s, %d economy seats, %d ms per run%n",
+                layout.getName(), layout.getNumOfSeats(true), runMillis);
+        System.out.printf("%8s %16s %16s %16s%n", "threads", "synchronized", "row locking", "lock-free");
+        for (int numOfThreads : THREAD_COUNTS) {
+            double serialized = run(BookingMode.SINGLE_THREADED, true, numOfThreads);
+            double rowLocking = run(BookingMode.ROW_LOCKING, false, numOfThreads);
+            double lockFree = run(BookingMode.LOCK_FREE, false, numOfThreads);
+            System.out.printf("%8d %16.0f %16.0f %16.0f%n", numOfThreads, serialized, rowLocking, lockFree);
+        }
+
+        ReservationManager manager = new ReservationManager(layout, BookingMode.ROW_LOCKING);
+        Hashtable<String, Boolean> hashtable = new Hashtable<>();
+        int numOfSeats = layout.getNumOfSeats(false) + layout.getNumOfSeats(true);
+        String[] names = new String[2 * numOfSeats];
+        for (int i = 0; i < numOfSeats; i++) {
+            names[2 * i] = "pas " + i;
+            names[2 * i + 1] = "not booked " + i;
+            if (manager.makeIndividualReservation(names[2 * i], i >= layout.getNumOfSeats(false),
+                    SEAT_TYPES[i % SEAT_TYPES.length]).isSuccessful()) {
+                hashtable.put(names[2 * i], true);
+            }
+        }
+        System.out.printf("%nName lookups on %d booked names%n", hashtable.size());
+        System.out.printf("%8s %16s %16s%n", "threads", "hashtable", "manager");
+        for (int numOfThreads : THREAD_COUNTS) {
+            double synchronizedIndex = runLookups(hashtable::containsKey, names, numOfThreads);
+            double concurrentIndex = runLookups(name -> manager.isNameDuplicated(false, name), names, numOfThreads);
+            System.out.printf("%8d %16.0f %16.0f%n", numOfThreads, synchronizedIndex, concurrentIndex);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long runMillis = (args.length > 0) ? Long.parseLong(args[0]) * 1000 : 1000;
+        AircraftLayout layout = (args.length > 1) ? AircraftLayout.load(new File(args[1])) : AircraftLayout.DEFAULT;
+        new ContentionBenchmark(layout, runMillis).runAll();
+    }
+}
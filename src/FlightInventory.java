@@ -0,0 +1,584 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * One object of FlightInventory holds the reservations of many flights keyed by flight id.
+ * Flights are sharded across a fixed set of partitions so that looking up flights in different
+ * partitions never contends, and operations on a flight run outside of the partition lock.
+ * A flight is loaded from its file on first use and saved and unloaded again when its partition
+ * holds more idle flights than allowed, so memory grows with the active flights only.
+ * When journaling is on, every booking of a flight is also recorded in the journal next to its
+ * file, which is replayed when the flight is loaded and emptied when the idle flight is saved.
+ */
+public class FlightInventory {
+    private static final String FLIGHT_FILE_SUFFIX = ".flight";
+    private static final String JOURNAL_FILE_SUFFIX = ".journal";
+    private static final String VALID_FLIGHT_ID = "[A-Za-z0-9_-]+";
+    public static final int DEFAULT_NUM_OF_PARTITIONS = 64;
+    public static final int DEFAULT_FLIGHTS_PER_PARTITION = 256;
+
+    private final File dataDir;
+    private final Function<String, AircraftLayout> layoutOfFlight;
+    private final BookingMode bookingMode;
+    private final int maxFlightsPerPartition;
+    private final boolean isJournaled;
+    private final Partition[] partitions;
+    private volatile ReservationMetrics metrics = NoOpReservationMetrics.INSTANCE;
+
+    /**
+     * One object of FlightEntry is a flight, loaded or being loaded, and the number of operations using it.
+     * The entry is put into its partition before the flight is loaded, so the partition lock is not held
+     * while the flight is read from its files; operations on the flight wait for the load instead.
+     */
+    private static class FlightEntry {
+        private final String flightId;
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        private ReservationManager manager;
+        private ReservationJournal journal;
+        private int pins = 0;
+        private CompletableFuture<Void> barrier;
+
+        /**
+         * Constructor of the class
+         *
+         * @param flightId the flight id
+         */
+        private FlightEntry(String flightId) {
+            this.flightId = flightId;
+        }
+    }
+
+    /**
+     * One object of Partition holds the loaded flights of one shard. The lock of the partition only
+     * guards its maps and the pins of its flights; loading, saving and unloading a flight run outside
+     * of it, with the flight kept in the map so other operations on it wait for them to finish.
+     */
+    private class Partition {
+        private final HashMap<String, FlightEntry> flights = new HashMap<>();
+        private final LinkedHashMap<String, FlightEntry> idleFlights = new LinkedHashMap<>();
+
+        /**
+         * Gets a flight, loading it if needed, and pins it so it is not unloaded while in use.
+         * Loading a new flight unloads the least recently used idle flights when the partition is full.
+         *
+         * @param flightId the flight id
+         * @return the pinned flight
+         */
+        private FlightEntry acquire(String flightId) {
+            while (true) {
+                FlightEntry entry;
+                CompletableFuture<Void> barrier = null;
+                boolean isLoader = false;
+                ArrayList<FlightEntry> evicted = null;
+                synchronized (this) {
+                    entry = flights.get(flightId);
+                    if (entry != null && entry.barrier != null) {
+                        barrier = entry.barrier;
+                    } else {
+                        if (entry == null) {
+                            entry = new FlightEntry(flightId);
+                            flights.put(flightId, entry);
+                            isLoader = true;
+                            evicted = takeIdleFlights();
+                        }
+                        entry.pins++;
+                        idleFlights.remove(flightId);
+                    }
+                }
+                if (barrier != null) {
+                    barrier.join();
+                    continue;
+                }
+                if (isLoader) {
+                    try {
+                        loadFlight(entry);
+                    } catch (RuntimeException e) {
+                        synchronized (this) {
+                            flights.remove(flightId, entry);
+                            entry.pins--;
+                        }
+                        entry.loaded.completeExceptionally(e);
+                        unloadFlights(evicted);
+                        throw e;
+                    }
+                    entry.loaded.complete(null);
+                    unloadFlights(evicted);
+                } else {
+                    try {
+                        entry.loaded.join();
+                    } catch (CompletionException e) {
+                        release(entry);
+                        throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+                    }
+                }
+                return entry;
+            }
+        }
+
+        /**
+         * Unpins a flight after an operation is done with it. A flight becoming idle in a partition
+         * holding too many flights lets the least recently used idle flights be unloaded.
+         *
+         * @param entry the pinned flight
+         */
+        private void release(FlightEntry entry) {
+            ArrayList<FlightEntry> evicted = null;
+            synchronized (this) {
+                if (--entry.pins == 0 && flights.get(entry.flightId) == entry && entry.loaded.isDone()
+                        && !entry.loaded.isCompletedExceptionally()) {
+                    idleFlights.put(entry.flightId, entry);
+                    if (flights.size() > maxFlightsPerPartition) {
+                        evicted = takeIdleFlights();
+                    }
+                }
+            }
+            unloadFlights(evicted);
+        }
+
+        /**
+         * Unloads the flights taken by takeIdleFlights. A flight that cannot be saved stays loaded
+         * and is taken again later; the failure does not reach the operation that made room.
+         *
+         * @param evicted the flights to unload, or null
+         */
+        private void unloadFlights(ArrayList<FlightEntry> evicted) {
+            if (evicted == null) {
+                return;
+            }
+            for (FlightEntry idle : evicted) {
+                try {
+                    unloadFlight(idle);
+                } catch (RuntimeException e) {
+                    // the flight stays loaded and idle; a failed snapshot is recorded in its metrics
+                }
+            }
+        }
+
+        /**
+         * Takes the least recently idle flights to unload while the partition holds too many flights.
+         * Flights with seats held or bookings waiting stay loaded. The taken flights stay in the map
+         * behind a barrier until they are unloaded.
+         *
+         * @return the flights to unload
+         */
+        private ArrayList<FlightEntry> takeIdleFlights() {
+            ArrayList<FlightEntry> evicted = new ArrayList<>();
+            int numOfLoaded = flights.size();
+            Iterator<FlightEntry> iter = idleFlights.values().iterator();
+            while (numOfLoaded > maxFlightsPerPartition && iter.hasNext()) {
+                FlightEntry entry = iter.next();
+                if (entry.barrier == null && !entry.manager.hasUnsavedRequests()) {
+                    iter.remove();
+                    entry.barrier = new CompletableFuture<>();
+                    evicted.add(entry);
+                    numOfLoaded--;
+                }
+            }
+            return evicted;
+        }
+
+        /**
+         * Saves and closes a flight taken to unload, then removes it and lets waiting operations load it again.
+         * A flight that cannot be saved is kept loaded and idle, so its bookings are not lost.
+         *
+         * @param entry the flight
+         * @throws UncheckedIOException if the flight cannot be saved or its journal closed
+         */
+        private void unloadFlight(FlightEntry entry) {
+            try {
+                saveFlight(entry, true);
+            } catch (RuntimeException e) {
+                CompletableFuture<Void> barrier;
+                synchronized (this) {
+                    barrier = entry.barrier;
+                    entry.barrier = null;
+                    idleFlights.put(entry.flightId, entry);
+                }
+                barrier.complete(null);
+                throw e;
+            }
+            try {
+                closeFlight(entry);
+            } finally {
+                synchronized (this) {
+                    flights.remove(entry.flightId, entry);
+                }
+                entry.barrier.complete(null);
+            }
+        }
+
+        /**
+         * Saves and unloads a flight if it is idle.
+         *
+         * @param flightId the flight id
+         * @return true if the flight is not loaded anymore
+         * @throws UncheckedIOException if the flight cannot be saved, which keeps it loaded
+         */
+        private boolean unload(String flightId) {
+            FlightEntry entry;
+            synchronized (this) {
+                entry = flights.get(flightId);
+                if (entry == null) {
+                    return true;
+                }
+                if (entry.barrier != null || entry.pins > 0 || entry.manager.hasUnsavedRequests()) {
+                    return false;
+                }
+                idleFlights.remove(flightId);
+                entry.barrier = new CompletableFuture<>();
+            }
+            unloadFlight(entry);
+            return true;
+        }
+
+        /**
+         * Saves a loaded flight of the partition.
+         *
+         * @param flightId the flight id
+         * @throws UncheckedIOException if the flight cannot be saved
+         */
+        private void save(String flightId) {
+            FlightEntry entry;
+            synchronized (this) {
+                entry = flights.get(flightId);
+                if (entry == null || !holdBackIfIdle(entry)) {
+                    return;
+                }
+            }
+            saveHeldBack(entry);
+        }
+
+        /**
+         * Saves all loaded flights of the partition. A flight that cannot be saved does not keep
+         * the others from being saved.
+         *
+         * @throws UncheckedIOException if a flight cannot be saved
+         */
+        private void saveAll() {
+            ArrayList<FlightEntry> loaded = new ArrayList<>();
+            synchronized (this) {
+                for (FlightEntry entry : flights.values()) {
+                    if (holdBackIfIdle(entry)) {
+                        loaded.add(entry);
+                    }
+                }
+            }
+            RuntimeException failure = null;
+            for (FlightEntry entry : loaded) {
+                try {
+                    saveHeldBack(entry);
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Puts an idle flight behind a barrier so no operation starts while it is saved and its
+         * journal emptied. Must be called with the partition lock held.
+         *
+         * @param entry the flight
+         * @return false if the flight is not loaded or is being unloaded, so it is not saved
+         */
+        private boolean holdBackIfIdle(FlightEntry entry) {
+            if (entry.barrier != null || !entry.loaded.isDone() || entry.loaded.isCompletedExceptionally()) {
+                return false;
+            }
+            if (entry.pins == 0) {
+                entry.barrier = new CompletableFuture<>();
+            }
+            return true;
+        }
+
+        /**
+         * Saves a flight taken by holdBackIfIdle, emptying its journal if it was idle, and lets
+         * waiting operations continue.
+         *
+         * @param entry the flight
+         */
+        private void saveHeldBack(FlightEntry entry) {
+            CompletableFuture<Void> barrier;
+            synchronized (this) {
+                barrier = entry.barrier;
+            }
+            if (barrier == null) {
+                saveFlight(entry, false);
+                return;
+            }
+            try {
+                saveFlight(entry, true);
+            } finally {
+                synchronized (this) {
+                    entry.barrier = null;
+                }
+                barrier.complete(null);
+            }
+        }
+
+        /**
+         * Gets the ids of the loaded flights of the partition.
+         *
+         * @return the flight ids
+         */
+        private synchronized ArrayList<String> getFlightIds() {
+            return new ArrayList<>(flights.keySet());
+        }
+    }
+
+    /**
+     * Constructor of the class using the default layout for all flights.
+     *
+     * @param dataDir directory holding one file per flight
+     */
+    public FlightInventory(File dataDir) {
+        this(dataDir, flightId -> AircraftLayout.DEFAULT, BookingMode.SINGLE_THREADED,
+                DEFAULT_NUM_OF_PARTITIONS, DEFAULT_FLIGHTS_PER_PARTITION);
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param dataDir                directory holding one file per flight
+     * @param layoutOfFlight         gives the seat layout of a flight
+     * @param bookingMode            how the seats of a flight are protected against concurrent bookings
+     * @param numOfPartitions        number of partitions the flights are sharded across
+     * @param maxFlightsPerPartition number of flights a partition keeps loaded before unloading idle ones
+     */
+    public FlightInventory(File dataDir, Function<String, AircraftLayout> layoutOfFlight, BookingMode bookingMode,
+                           int numOfPartitions, int maxFlightsPerPartition) {
+        this(dataDir, layoutOfFlight, bookingMode, numOfPartitions, maxFlightsPerPartition, false);
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param dataDir                directory holding one file per flight
+     * @param layoutOfFlight         gives the seat layout of a flight
+     * @param bookingMode            how the seats of a flight are protected against concurrent bookings
+     * @param numOfPartitions        number of partitions the flights are sharded across
+     * @param maxFlightsPerPartition number of flights a partition keeps loaded before unloading idle ones
+     * @param isJournaled            true to record every booking in a journal per loaded flight
+     */
+    public FlightInventory(File dataDir, Function<String, AircraftLayout> layoutOfFlight, BookingMode bookingMode,
+                           int numOfPartitions, int maxFlightsPerPartition, boolean isJournaled) {
+        if (numOfPartitions <= 0 || maxFlightsPerPartition <= 0) {
+            throw new IllegalArgumentException("Partitions and flights per partition must be positive");
+        }
+        this.dataDir = dataDir;
+        this.layoutOfFlight = layoutOfFlight;
+        this.bookingMode = bookingMode;
+        this.maxFlightsPerPartition = maxFlightsPerPartition;
+        this.isJournaled = isJournaled;
+        partitions = new Partition[numOfPartitions];
+        for (int i = 0; i < numOfPartitions; i++) {
+            partitions[i] = new Partition();
+        }
+        dataDir.mkdirs();
+    }
+
+    /**
+     * Sets where the timings of the operations of flights loaded from now on are recorded.
+     *
+     * @param metrics the metrics recorder shared by the flights
+     */
+    public void setMetrics(ReservationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs an operation on the reservations of a flight, loading the flight if needed.
+     * Operations on the same flight run one at a time unless the flights are booked concurrently.
+     *
+     * @param flightId  the flight id
+     * @param operation the operation to run
+     * @param <T>       the result type of the operation
+     * @return the result of the operation
+     */
+    public <T> T execute(String flightId, Function<ReservationManager, T> operation) {
+        Partition partition = getPartition(flightId);
+        FlightEntry entry = partition.acquire(flightId);
+        try {
+            if (bookingMode != BookingMode.SINGLE_THREADED) {
+                return operation.apply(entry.manager);
+            }
+            synchronized (entry.manager) {
+                return operation.apply(entry.manager);
+            }
+        } finally {
+            partition.release(entry);
+        }
+    }
+
+    /**
+     * Saves and unloads a flight.
+     *
+     * @param flightId the flight id
+     * @return true if the flight is unloaded, false if it is still in use or has seats held or bookings waiting
+     * @throws UncheckedIOException if the flight cannot be saved, which keeps it loaded
+     */
+    public boolean unload(String flightId) {
+        return getPartition(flightId).unload(flightId);
+    }
+
+    /**
+     * Saves a flight to its file if it is loaded, emptying its journal if no operation uses it.
+     * A flight whose journal failed to sync takes bookings again once saved while idle.
+     *
+     * @param flightId the flight id
+     * @throws UncheckedIOException if the flight cannot be saved
+     */
+    public void save(String flightId) {
+        getPartition(flightId).save(flightId);
+    }
+
+    /**
+     * Saves all loaded flights to their files.
+     *
+     * @throws UncheckedIOException if a flight cannot be saved; the other flights are still saved
+     */
+    public void saveAll() {
+        for (Partition partition : partitions) {
+            partition.saveAll();
+        }
+    }
+
+    /**
+     * Gets the ids of all loaded flights.
+     *
+     * @return the flight ids
+     */
+    public ArrayList<String> getLoadedFlights() {
+        ArrayList<String> flightIds = new ArrayList<>();
+        for (Partition partition : partitions) {
+            flightIds.addAll(partition.getFlightIds());
+        }
+        return flightIds;
+    }
+
+    /**
+     * Checks if a flight id can name a flight file.
+     *
+     * @param flightId the flight id
+     * @return true if the id has only letters, digits, '_' and '-'
+     */
+    public static boolean isValidFlightId(String flightId) {
+        return flightId != null && flightId.matches(VALID_FLIGHT_ID);
+    }
+
+    /**
+     * Finds the partition of a flight.
+     *
+     * @param flightId the flight id
+     * @return the partition
+     */
+    private Partition getPartition(String flightId) {
+        if (!isValidFlightId(flightId)) {
+            throw new IllegalArgumentException("Invalid flight id: " + flightId);
+        }
+        int hash = flightId.hashCode();
+        hash ^= (hash >>> 16);
+        return partitions[(hash & Integer.MAX_VALUE) % partitions.length];
+    }
+
+    /**
+     * Gets the file of a flight.
+     *
+     * @param flightId the flight id
+     * @return the file
+     */
+    private File getFlightFile(String flightId) {
+        return new File(dataDir, flightId + FLIGHT_FILE_SUFFIX);
+    }
+
+    /**
+     * Creates the reservations of a flight, restoring them from its file if it exists
+     * and replaying its journal.
+     *
+     * @param entry the flight being loaded
+     */
+    private void loadFlight(FlightEntry entry) {
+        String flightId = entry.flightId;
+        ReservationManager manager = new ReservationManager(layoutOfFlight.apply(flightId), bookingMode);
+        manager.setMetrics(metrics);
+        File file = getFlightFile(flightId);
+        if (file.exists()) {
+            try {
+                manager.restore(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot restore flight " + flightId, e);
+            }
+        }
+        ReservationJournal journal = null;
+        if (isJournaled) {
+            try {
+                journal = new ReservationJournal(new File(dataDir, flightId + JOURNAL_FILE_SUFFIX));
+                journal.replay(manager);
+            } catch (IOException e) {
+                if (journal != null) {
+                    try {
+                        journal.close();
+                    } catch (IOException closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                }
+                throw new UncheckedIOException("Cannot open the journal of flight " + flightId, e);
+            }
+            manager.setJournal(journal);
+        }
+        entry.manager = manager;
+        entry.journal = journal;
+    }
+
+    /**
+     * Saves the reservations of a flight to its file. The journal is emptied only if the flight
+     * is idle, since bookings running during the save may be missing from the file.
+     *
+     * @param entry  the flight
+     * @param isIdle true if no operation uses the flight and none can start until it is saved
+     * @throws UncheckedIOException if the flight cannot be saved or its journal emptied
+     */
+    private void saveFlight(FlightEntry entry, boolean isIdle) {
+        synchronized (entry.manager) {
+            if (!entry.manager.saveSnapshot(getFlightFile(entry.flightId))) {
+                throw new UncheckedIOException(new IOException("Cannot save flight " + entry.flightId));
+            }
+            if (entry.journal != null && isIdle) {
+                try {
+                    entry.journal.reset();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot reset the journal of flight " + entry.flightId, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the journal of a flight that is unloaded.
+     *
+     * @param entry the flight
+     */
+    private void closeFlight(FlightEntry entry) {
+        if (entry.journal != null) {
+            try {
+                entry.journal.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close the journal of flight " + entry.flightId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * One object of FreeRunTree is a max segment tree over the seat rows of an airplane,
+ * keeping the longest run of empty adjacent seats of every row.
+ * Rows booked by different threads update the tree at the same time without a lock: a node is
+ * set to the larger of its children with compare-and-set, and set again until it still matches
+ * them after the write, so a value another thread computed from older children does not stay.
+ * Once all updates are done the tree is exact; a search running during updates may see a row's
+ * old run, so callers check the run on the row itself.
+ */
+public class FreeRunTree {
+    private final int leafCount;
+    private final AtomicIntegerArray tree;
+
+    /**
+     * Constructor of the class
+     *
+     * @param numOfRows number of seat rows covered by the tree
+     */
+    public FreeRunTree(int numOfRows) {
+        int leaves = 1;
+        while (leaves < numOfRows) {
+            leaves <<= 1;
+        }
+        leafCount = leaves;
+        tree = new AtomicIntegerArray(2 * leafCount);
+    }
+
+    /**
+     * Sets the longest run of empty adjacent seats of a row
+     *
+     * @param index   index of the row
+     * @param numOfSeat the longest run of empty seats in the row
+     */
+    public void update(int index, int numOfSeat) {
+        int node = index + leafCount;
+        if (tree.getAndSet(node, numOfSeat) == numOfSeat) {
+            return;
+        }
+        for (node >>= 1; node > 0; node >>= 1) {
+            if (!fix(node)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets a node to the larger of its children until it matches them after the write.
+     * A node already matching its children needs no change above it from this update; a thread
+     * that wrote it fixes the nodes above itself.
+     *
+     * @param node the node
+     * @return false if the node already matched its children
+     */
+    private boolean fix(int node) {
+        boolean isChanged = false;
+        while (true) {
+            int current = tree.get(node);
+            int max = Math.max(tree.get(2 * node), tree.get(2 * node + 1));
+            if (current == max) {
+                return isChanged;
+            }
+            if (tree.compareAndSet(node, current, max)) {
+                isChanged = true;
+            }
+        }
+    }
+
+    /**
+     * Gets the longest run of empty adjacent seats of a row
+     *
+     * @param index index of the row
+     * @return the longest run of empty seats in the row
+     */
+    public int get(int index) {
+        return tree.get(index + leafCount);
+    }
+
+    /**
+     * Finds the first row in a range with a run of at least the given number of empty seats
+     *
+     * @param from      first row index of the range (inclusive)
+     * @param to        last row index of the range (exclusive)
+     * @param numOfSeat number of adjacent empty seats needed
+     * @return the index of the row or -1 if no row has such a run
+     */
+    public int findFirstAtLeast(int from, int to, int numOfSeat) {
+        return findFirstAtLeast(1, 0, leafCount, from, to, numOfSeat);
+    }
+
+    /**
+     * Finds the first row in a range of the subtree with a run of at least the given number of empty seats
+     *
+     * @param node      the subtree root
+     * @param left      first row index covered by the subtree (inclusive)
+     * @param right     last row index covered by the subtree (exclusive)
+     * @param from      first row index of the range (inclusive)
+     * @param to        last row index of the range (exclusive)
+     * @param numOfSeat number of adjacent empty seats needed
+     * @return the index of the row or -1 if no row has such a run
+     */
+    private int findFirstAtLeast(int node, int left, int right, int from, int to, int numOfSeat) {
+        if (right <= from || left >= to || tree.get(node) < numOfSeat) {
+            return -1;
+        }
+        if (node >= leafCount) {
+            return left;
+        }
+        int mid = (left + right) >>> 1;
+        int index = findFirstAtLeast(2 * node, left, mid, from, to, numOfSeat);
+        if (index < 0) {
+            index = findFirstAtLeast(2 * node + 1, mid, right, from, to, numOfSeat);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the longest run of empty adjacent seats in a range of rows
+     *
+     * @param from first row index of the range (inclusive)
+     * @param to   last row index of the range (exclusive)
+     * @return the longest run of empty seats
+     */
+    public int getMax(int from, int to) {
+        int max = 0;
+        for (int left = from + leafCount, right = to + leafCount; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                max = Math.max(max, tree.get(left++));
+            }
+            if ((right & 1) == 1) {
+                max = Math.max(max, tree.get(--right));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Finds the first row in a range holding the longest run of empty adjacent seats
+     *
+     * @param from first row index of the range (inclusive)
+     * @param to   last row index of the range (exclusive)
+     * @return the index of the row or -1 if no row in the range has an empty seat
+     */
+    public int findMax(int from, int to) {
+        int max = getMax(from, to);
+        if (max == 0) {
+            return -1;
+        }
+        return findFirstAtLeast(from, to, max);
+    }
+}
@@ -0,0 +1,186 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToDoubleFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records a latency histogram per operation and a counter per booking outcome, and reads gauges
+ * such as the cabin fill only when the metrics are looked at. The metrics can be read through JMX
+ * once registered, or dumped as plain text.
+ */
+public class HistogramReservationMetrics implements ReservationMetrics, ReservationMetricsMXBean {
+    private static final String OBJECT_NAME_PREFIX = "ReservationSystem:type=Metrics,name=";
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] outcomes = new LongAdder[ReservationResult.Status.values().length];
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor of the class
+     */
+    public HistogramReservationMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public long startTimer() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void record(Operation operation, long startTime) {
+        histograms[operation.ordinal()].record(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void record(Operation operation, long startTime, ReservationResult.Status status) {
+        histograms[operation.ordinal()].record(System.nanoTime() - startTime);
+        outcomes[status.ordinal()].increment();
+    }
+
+    /**
+     * Adds a gauge read whenever the metrics are looked at.
+     *
+     * @param name  the name of the gauge
+     * @param gauge gives the current value
+     */
+    public void addGauge(String name, DoubleSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Adds gauges for the share of reserved seats of each cabin class of a flight.
+     *
+     * @param prefix  prepended to the gauge names, e.g. the flight id
+     * @param manager the reservations of the flight
+     */
+    public void addCabinFillGauges(String prefix, ReservationManager manager) {
+        AircraftLayout layout = manager.getLayout();
+        for (boolean isEconomy : new boolean[]{false, true}) {
+            int numOfSeats = layout.getNumOfSeats(isEconomy);
+            if (numOfSeats > 0) {
+                addGauge(prefix + (isEconomy ? "economy_fill" : "first_fill"),
+                        () -> 1.0 - (double) manager.getVacantSeats(isEconomy) / numOfSeats);
+            }
+        }
+    }
+
+    /**
+     * Gets the histogram of an operation.
+     *
+     * @param operation the operation
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(Operation operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param name the name the metrics are registered under
+     * @throws JMException if the metrics cannot be registered
+     */
+    public void register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    /**
+     * Collects a value of every operation that ran.
+     *
+     * @param value gives the value of a histogram
+     * @return the values by operation
+     */
+    private Map<String, Double> collect(ToDoubleFunction<LatencyHistogram> value) {
+        LinkedHashMap<String, Double> values = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histograms[operation.ordinal()];
+            if (histogram.getCount() > 0) {
+                values.put(operation.name(), value.applyAsDouble(histogram));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        collect(LatencyHistogram::getCount).forEach((name, count) -> counts.put(name, count.longValue()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getP50Micros() {
+        return collect(histogram -> histogram.getPercentile(0.5) / NANOS_PER_MICRO);
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        return collect(histogram -> histogram.getPercentile(0.99) / NANOS_PER_MICRO);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        return collect(histogram -> histogram.getMax() / NANOS_PER_MICRO);
+    }
+
+    @Override
+    public Map<String, Long> getOutcomeCounts() {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        for (ReservationResult.Status status : ReservationResult.Status.values()) {
+            counts.put(status.name(), outcomes[status.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getGauges() {
+        LinkedHashMap<String, Double> values = new LinkedHashMap<>();
+        gauges.keySet().stream().sorted().forEach(name -> values.put(name, gauges.get(name).getAsDouble()));
+        return values;
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-24s %10s %10s %10s %10s %10s%n", "operation (us)", "count", "mean", "p50", "p99", "max"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histograms[operation.ordinal()];
+            if (histogram.getCount() > 0) {
+                text.append(String.format("%-24s %10d %10.1f %10.1f %10.1f %10.1f%n", operation.name().toLowerCase(),
+                        histogram.getCount(), histogram.getMean() / NANOS_PER_MICRO,
+                        histogram.getPercentile(0.5) / NANOS_PER_MICRO, histogram.getPercentile(0.99) / NANOS_PER_MICRO,
+                        histogram.getMax() / NANOS_PER_MICRO));
+            }
+        }
+        getOutcomeCounts().forEach((name, count) -> {
+            if (count > 0) {
+                text.append(String.format("%-24s %10d%n", name.toLowerCase(), count));
+            }
+        });
+        getGauges().forEach((name, value) -> text.append(String.format("%-24s %10.3f%n", name, value)));
+        return text.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (LongAdder outcome : outcomes) {
+            outcome.reset();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drives a ReservationServer with concurrent clients and reports the requests per second and the
+ * p50, p99 and p99.9 latency. Every client sends its next request as soon as the last one is
+ * answered: it books economy seats, a group of three every eighth booking, asks for the
+ * availability chart every sixteenth request and cancels its oldest booking once it holds
+ * its share of the cabin. When no port is given, a server is started in this process on a
+ * temporary data directory.
+ * <p>
+ * Usage: java LoadGenerator [clients] [seconds] [flights] [port]
+ */
+public class LoadGenerator {
+    private static final String[] SEAT_TYPES = {"W", "C", "A"};
+    private static final int GROUP_EVERY = 8;
+    private static final int CHART_EVERY = 16;
+    private static final int BOOKINGS_PER_CLIENT = 8;
+    private static final double WARM_UP_SHARE = 0.2;
+
+    private final String baseUrl;
+    private final int numOfFlights;
+
+    /**
+     * One client sending requests one after another and recording their latencies.
+     */
+    private class Client extends Thread {
+        private final int clientNum;
+        private final AtomicBoolean isMeasuring;
+        private final AtomicBoolean isRunning;
+        private final ArrayDeque<String[]> bookings = new ArrayDeque<>();
+        private final TreeMap<Integer, Integer> statusCounts = new TreeMap<>();
+        private long[] latencies = new long[1024];
+        private int numOfLatencies = 0;
+        private int numOfErrors = 0;
+
+        /**
+         * Constructor of the class
+         *
+         * @param clientNum   the number of the client, making its names unique
+         * @param isMeasuring tells if the latencies are recorded
+         * @param isRunning   tells if the client keeps going
+         */
+        private Client(int clientNum, AtomicBoolean isMeasuring, AtomicBoolean isRunning) {
+            super("load-client-" + clientNum);
+            this.clientNum = clientNum;
+            this.isMeasuring = isMeasuring;
+            this.isRunning = isRunning;
+        }
+
+        /**
+         * Sends requests until stopped.
+         */
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int count = 0;
+            while (isRunning.get()) {
+                count++;
+                String flight = "LG" + random.nextInt(numOfFlights);
+                String name = "c" + clientNum + "-" + count;
+                String[] request;
+                String[] booking = null;
+                if (count % CHART_EVERY == 0) {
+                    request = get(flight, "availability", "class=E");
+                } else if (bookings.size() >= BOOKINGS_PER_CLIENT) {
+                    String[] oldest = bookings.poll();
+                    request = post(oldest[0], "cancellations", "name=" + encode(oldest[1]) + "&group=" + oldest[2]);
+                } else if (count % GROUP_EVERY == 0) {
+                    request = post(flight, "groups", "name=" + encode(name) + "&class=E&names="
+                            + encode(name + "a," + name + "b," + name + "c"));
+                    booking = new String[]{flight, name, "true"};
+                } else {
+                    request = post(flight, "passengers", "name=" + encode(name) + "&class=E&pref="
+                            + SEAT_TYPES[random.nextInt(SEAT_TYPES.length)]);
+                    booking = new String[]{flight, name, "false"};
+                }
+
+                long startTime = System.nanoTime();
+                int status;
+                try {
+                    status = send(request);
+                } catch (IOException e) {
+                    numOfErrors++;
+                    continue;
+                }
+                long latency = System.nanoTime() - startTime;
+                if (booking != null && status == 200) {
+                    bookings.add(booking);
+                }
+                if (isMeasuring.get()) {
+                    if (numOfLatencies == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+                    }
+                    latencies[numOfLatencies++] = latency;
+                    statusCounts.merge(status, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param port         the port of the server on localhost
+     * @param numOfFlights number of flights the clients book on
+     */
+    public LoadGenerator(int port, int numOfFlights) {
+        baseUrl = "http://localhost:" + port + "/flights/";
+        this.numOfFlights = numOfFlights;
+    }
+
+    /**
+     * Builds a GET request.
+     *
+     * @param flight   the flight id
+     * @param resource the resource of the flight
+     * @param query    the query string
+     * @return the url and no form
+     */
+    private String[] get(String flight, String resource, String query) {
+        return new String[]{baseUrl + flight + "/" + resource + "?" + query, null};
+    }
+
+    /**
+     * Builds a POST request with a form body.
+     *
+     * @param flight   the flight id
+     * @param resource the resource of the flight
+     * @param form     the url-encoded form
+     * @return the url and the form
+     */
+    private String[] post(String flight, String resource, String form) {
+        return new String[]{baseUrl + flight + "/" + resource, form};
+    }
+
+    /**
+     * Sends a request over a kept-alive connection and reads the whole answer.
+     *
+     * @param request the url and the form, or null for a GET request
+     * @return the HTTP status
+     * @throws IOException if the request cannot be sent
+     */
+    private static int send(String[] request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(request[0]).openConnection();
+        if (request[1] != null) {
+            byte[] form = request[1].getBytes(StandardCharsets.UTF_8);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(form.length);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(form);
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                in.readAllBytes();
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Url-encodes a parameter value.
+     *
+     * @param value the value
+     * @return the encoded value
+     */
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs the clients, warming up first, and prints the throughput and latencies.
+     *
+     * @param numOfClients number of concurrent clients
+     * @param runMillis    how long the measured run takes
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public void run(int numOfClients, long runMillis) throws InterruptedException {
+        AtomicBoolean isMeasuring = new AtomicBoolean(false);
+        AtomicBoolean isRunning = new AtomicBoolean(true);
+        Client[] clients = new Client[numOfClients];
+        for (int i = 0; i < numOfClients; i++) {
+            clients[i] = new Client(i, isMeasuring, isRunning);
+            clients[i].start();
+        }
+        Thread.sleep((long) (runMillis * WARM_UP_SHARE));
+        isMeasuring.set(true);
+        long startTime = System.nanoTime();
+        Thread.sleep(runMillis);
+        isMeasuring.set(false);
+        long elapsed = System.nanoTime() - startTime;
+        isRunning.set(false);
+
+        long[] all = new long[0];
+        int numOfErrors = 0;
+        TreeMap<Integer, Integer> statusCounts = new TreeMap<>();
+        for (Client c : clients) {
+            c.join();
+            int from = all.length;
+            all = Arrays.copyOf(all, from + c.numOfLatencies);
+            System.arraycopy(c.latencies, 0, all, from, c.numOfLatencies);
+            numOfErrors += c.numOfErrors;
+            c.statusCounts.forEach((status, count) -> statusCounts.merge(status, count, Integer::sum));
+        }
+        Arrays.sort(all);
+        System.out.printf("%d clients, %d flights: %d requests in %.1f s, %.0f requests/s%n", numOfClients,
+                numOfFlights, all.length, elapsed / 1e9, all.length / (elapsed / 1e9));
+        System.out.printf("latency p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), percentile(all, 1.0));
+        System.out.println("responses by HTTP status " + statusCounts + ", connection errors " + numOfErrors);
+    }
+
+    /**
+     * Gets a percentile of sorted latencies.
+     *
+     * @param sorted   the latencies in nanoseconds, sorted
+     * @param fraction the percentile as a fraction
+     * @return the latency in milliseconds, 0 if there are none
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args clients, seconds, flights and the port of a running server
+     * @throws Exception if the in-process server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        int numOfClients = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        long runMillis = (long) (1000 * ((args.length > 1) ? Double.parseDouble(args[1]) : 10));
+        int numOfFlights = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+        ReservationServer server = null;
+        File dataDir = null;
+        int port;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            dataDir = Files.createTempDirectory("loadgen").toFile();
+            FlightInventory inventory = new FlightInventory(dataDir, flightId -> AircraftLayout.DEFAULT,
+                    BookingMode.LOCK_FREE, FlightInventory.DEFAULT_NUM_OF_PARTITIONS,
+                    FlightInventory.DEFAULT_FLIGHTS_PER_PARTITION, true);
+            server = new ReservationServer(inventory, 0);
+            server.start();
+            port = server.getPort();
+            System.out.println("Started a server on port " + port + " with "
+                    + (server.isVirtual() ? "virtual threads" : "a thread pool") + ", flights in " + dataDir);
+        }
+        new LoadGenerator(port, numOfFlights).run(numOfClients, runMillis);
+        if (server != null) {
+            server.stop(0);
+            for (File file : dataDir.listFiles()) {
+                file.delete();
+            }
+            dataDir.delete();
+        }
+    }
+}
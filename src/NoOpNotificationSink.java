@@ -0,0 +1,20 @@
+/**
+ * A notification sink that drops all notifications.
+ */
+public final class NoOpNotificationSink implements NotificationSink {
+    public static final NoOpNotificationSink INSTANCE = new NoOpNotificationSink();
+
+    /**
+     * Constructor of the class, use INSTANCE instead.
+     */
+    private NoOpNotificationSink() {
+    }
+
+    @Override
+    public void seatReserved(int row, int col, String name) {
+    }
+
+    @Override
+    public void seatCancelled(int row, int col, String name) {
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * A metrics recorder that records nothing and never reads the clock.
+ */
+public final class NoOpReservationMetrics implements ReservationMetrics {
+    public static final NoOpReservationMetrics INSTANCE = new NoOpReservationMetrics();
+
+    /**
+     * Constructor of the class, use INSTANCE instead.
+     */
+    private NoOpReservationMetrics() {
+    }
+
+    @Override
+    public long startTimer() {
+        return 0;
+    }
+
+    @Override
+    public void record(Operation operation, long startTime) {
+    }
+
+    @Override
+    public void record(Operation operation, long startTime, ReservationResult.Status status) {
+    }
+}
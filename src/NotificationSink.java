@@ -0,0 +1,36 @@
+/**
+ * Receives the notifications of a ReservationManager about reserved and cancelled seats,
+ * so the booking path itself does no formatting or I/O.
+ */
+public interface NotificationSink {
+
+    /**
+     * Tells that a seat is reserved.
+     *
+     * @param row  the seat row
+     * @param col  the seat column
+     * @param name the passenger name
+     */
+    void seatReserved(int row, int col, String name);
+
+    /**
+     * Tells that a seat reservation is cancelled.
+     *
+     * @param row  the seat row
+     * @param col  the seat column
+     * @param name the passenger name
+     */
+    void seatCancelled(int row, int col, String name);
+
+    /**
+     * Waits until all notifications given so far are delivered.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Delivers the remaining notifications and releases the resources of the sink.
+     */
+    default void close() {
+    }
+}
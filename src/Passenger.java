@@ -1,15 +1,16 @@
 
 
 /**
- * One object of Passenger class represents a passenger in the reservation.
+ * One object of Passenger class represents a passenger in the reservation. The seat is kept as a
+ * packed int, which is volatile since lock-free bookings set it on one thread and others read it.
  */
 public class Passenger {
-    private String name;
-    private Seat seat;
-    private String seatPref = " ";
-    private boolean isGrouped = false;
-    private boolean isEconomy;
-    private String groupName;
+    private final String name;
+    private final String groupName;
+    private final SeatType seatType;
+    private volatile int seat = Seat.NO_SEAT;
+    private final boolean isGrouped;
+    private final boolean isEconomy;
     /**
      * Constructor of the class
      *
@@ -18,10 +19,22 @@ public class Passenger {
      * @param seatPref  seat preference of the passenger
      */
     public Passenger(String name, boolean isEconomy, String seatPref) {
+        this(name, isEconomy, SeatType.fromCode(seatPref));
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param name      first and last name of passenger
+     * @param isEconomy if the passenger is in economy service class
+     * @param seatType  seat preference of the passenger, null if unknown
+     */
+    public Passenger(String name, boolean isEconomy, SeatType seatType) {
         this.name = name;
-        this.seatPref = seatPref;
+        this.seatType = seatType;
+        this.groupName = null;
         this.isEconomy = isEconomy;
-//        System.out.println("seatPref assigedto Pas : " + seatPref);
+        this.isGrouped = false;
     }
 
     /**
@@ -34,9 +47,11 @@ public class Passenger {
 
      */
     public Passenger(String name, boolean isEconomy, boolean isGrouped, String groupName) {
-        this(name,isEconomy, null);
-        this.isGrouped = isGrouped;
+        this.name = name;
         this.groupName = groupName;
+        this.seatType = null;
+        this.isEconomy = isEconomy;
+        this.isGrouped = isGrouped;
     }
 
     /**
@@ -63,10 +78,19 @@ public class Passenger {
     /**
      * Gets seat type if the passenger has seat preference
      *
-     * @return
+     * @return the letter of the seat type, null for a grouped passenger
      */
     public String getSeatPref() {
-        return seatPref;
+        return (seatType == null) ? null : seatType.getCode();
+    }
+
+    /**
+     * Gets seat type if the passenger has seat preference
+     *
+     * @return the seat type, null for a grouped passenger
+     */
+    public SeatType getSeatType() {
+        return seatType;
     }
 
     /**
@@ -75,15 +99,34 @@ public class Passenger {
      * @param s a assigned seat
      */
     public void setSeat(Seat s) {
-        seat = s;
+        seat = Seat.pack(s.getRow(), s.getCol());
+    }
+
+    /**
+     * Sets seat to passenger after successfully make reservation
+     *
+     * @param row the row number of the assigned seat
+     * @param col the column number of the assigned seat
+     */
+    public void setSeat(int row, int col) {
+        seat = Seat.pack(row, col);
     }
 
     /**
      * Accessor of seat that is reserved for the passenger
      *
-     * @return The seat.
+     * @return The seat, null if no seat is assigned.
      */
     public Seat getSeat() {
+        return (seat == Seat.NO_SEAT) ? null : Seat.of(Seat.rowOf(seat), Seat.colOf(seat));
+    }
+
+    /**
+     * Gets the seat reserved for the passenger packed into one int
+     *
+     * @return the packed seat, Seat.NO_SEAT if no seat is assigned
+     */
+    public int getPackedSeat() {
         return seat;
     }
 
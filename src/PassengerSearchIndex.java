@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * Finds the passengers of a flight by the start of a word of their name, or by a word with a
+ * spelling mistake. Every word of a name, and the whole name when it has several words, is kept
+ * in a sorted map, so a prefix search reads one range of it. Every distinct word is also listed
+ * under its trigrams, so a fuzzy search only measures the edit distance to the words sharing
+ * enough trigrams with the query. Passengers are added and removed while searches run.
+ */
+public class PassengerSearchIndex {
+    private static final char SEPARATOR = '\u0000';
+    private static final char END_OF_WORD = '\u0001';
+    private static final char PADDING = '\u0002';
+    private static final int GRAM_LENGTH = 3;
+    private static final int SHORT_WORD_LENGTH = 4;
+
+    private final ConcurrentSkipListMap<String, Passenger> passengersOfWords = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Set<String>> wordsOfTrigrams = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a seated passenger.
+     *
+     * @param pas the passenger, with its seat assigned
+     */
+    public void add(Passenger pas) {
+        for (String word : getWords(pas.getName())) {
+            passengersOfWords.put(getKey(word, pas), pas);
+            addTrigrams(word);
+        }
+    }
+
+    /**
+     * Removes a passenger added before. The words no other passenger has are forgotten.
+     *
+     * @param pas the passenger, still holding the seat it was added with
+     */
+    public void remove(Passenger pas) {
+        for (String word : getWords(pas.getName())) {
+            passengersOfWords.remove(getKey(word, pas), pas);
+            if (!hasWord(word)) {
+                for (String trigram : getTrigrams(word)) {
+                    Set<String> words = wordsOfTrigrams.get(trigram);
+                    if (words != null) {
+                        words.remove(word);
+                    }
+                }
+                // a passenger with the same word may have been added while its trigrams were removed
+                if (hasWord(word)) {
+                    addTrigrams(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the passengers with a word of their name, or their whole name, starting with a prefix.
+     *
+     * @param prefix   the prefix, case does not matter
+     * @param limit    the most passengers to return
+     * @param isListed tells if a passenger found is still reserved
+     * @return the passengers in the order of the matching words
+     */
+    public List<Passenger> searchPrefix(String prefix, int limit, Predicate<Passenger> isListed) {
+        String from = normalize(prefix);
+        LinkedHashSet<Passenger> found = new LinkedHashSet<>();
+        if (from.isEmpty()) {
+            return new ArrayList<>(found);
+        }
+        for (Passenger pas : passengersOfWords.subMap(from, from + Character.MAX_VALUE).values()) {
+            if (found.size() >= limit) {
+                break;
+            }
+            if (isListed.test(pas)) {
+                found.add(pas);
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Finds the passengers with a word of their name, or their whole name, at most one edit away
+     * from the query, or two edits for a query longer than four letters. A query of one letter
+     * only finds that letter.
+     *
+     * @param query    the query, case does not matter
+     * @param limit    the most passengers to return
+     * @param isListed tells if a passenger found is still reserved
+     * @return the passengers, the closest words first
+     */
+    public List<Passenger> searchFuzzy(String query, int limit, Predicate<Passenger> isListed) {
+        String word = normalize(query);
+        LinkedHashSet<Passenger> found = new LinkedHashSet<>();
+        if (word.isEmpty()) {
+            return new ArrayList<>(found);
+        }
+        int maxDistance = (word.length() == 1) ? 0 : (word.length() <= SHORT_WORD_LENGTH) ? 1 : 2;
+        List<String> trigrams = getTrigrams(word);
+        HashMap<String, Integer> sharedTrigrams = new HashMap<>();
+        for (String trigram : trigrams) {
+            Set<String> words = wordsOfTrigrams.get(trigram);
+            if (words != null) {
+                for (String candidate : words) {
+                    sharedTrigrams.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        // every edit changes at most three trigrams
+        int minShared = Math.max(1, trigrams.size() - GRAM_LENGTH * maxDistance);
+        ArrayList<List<String>> wordsOfDistances = new ArrayList<>();
+        for (int i = 0; i <= maxDistance; i++) {
+            wordsOfDistances.add(new ArrayList<>());
+        }
+        for (Map.Entry<String, Integer> entry : sharedTrigrams.entrySet()) {
+            String candidate = entry.getKey();
+            if (entry.getValue() >= minShared && Math.abs(candidate.length() - word.length()) <= maxDistance) {
+                int distance = getDistance(word, candidate, maxDistance);
+                if (distance <= maxDistance) {
+                    wordsOfDistances.get(distance).add(candidate);
+                }
+            }
+        }
+        for (List<String> words : wordsOfDistances) {
+            words.sort(null);
+            for (String candidate : words) {
+                for (Passenger pas : passengersOfWords.subMap(candidate + SEPARATOR, candidate + END_OF_WORD).values()) {
+                    if (found.size() >= limit) {
+                        return new ArrayList<>(found);
+                    }
+                    if (isListed.test(pas)) {
+                        found.add(pas);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Lists a word under its trigrams.
+     *
+     * @param word the word
+     */
+    private void addTrigrams(String word) {
+        for (String trigram : getTrigrams(word)) {
+            wordsOfTrigrams.computeIfAbsent(trigram, k -> ConcurrentHashMap.newKeySet()).add(word);
+        }
+    }
+
+    /**
+     * Checks if any passenger has a word.
+     *
+     * @param word the word
+     * @return true if the word is in the index
+     */
+    private boolean hasWord(String word) {
+        return !passengersOfWords.subMap(word + SEPARATOR, word + END_OF_WORD).isEmpty();
+    }
+
+    /**
+     * Gets the key of a word of a passenger. The seat tells apart passengers with the same word.
+     *
+     * @param word the word
+     * @param pas  the passenger
+     * @return the key
+     */
+    private static String getKey(String word, Passenger pas) {
+        return word + SEPARATOR + pas.getPackedSeat();
+    }
+
+    /**
+     * Gets the distinct words of a name and the whole name if it has several words.
+     *
+     * @param name the name
+     * @return the words in lower case
+     */
+    private static List<String> getWords(String name) {
+        String normalized = normalize(name);
+        ArrayList<String> words = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return words;
+        }
+        for (String word : normalized.split(" ")) {
+            if (!words.contains(word)) {
+                words.add(word);
+            }
+        }
+        if (normalized.indexOf(' ') >= 0) {
+            words.add(normalized);
+        }
+        return words;
+    }
+
+    /**
+     * Turns a name or query to lower case with single spaces between words.
+     *
+     * @param text the name or query
+     * @return the normalized text
+     */
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean isSpace = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                isSpace = true;
+            } else {
+                if (isSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                isSpace = false;
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the trigrams of a word padded with two characters at each end, so short words have
+     * some and the first and last letters count more.
+     *
+     * @param word the word
+     * @return the distinct trigrams
+     */
+    private static List<String> getTrigrams(String word) {
+        String padded = "" + PADDING + PADDING + word + PADDING + PADDING;
+        ArrayList<String> trigrams = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+            String trigram = padded.substring(i, i + GRAM_LENGTH);
+            if (!trigrams.contains(trigram)) {
+                trigrams.add(trigram);
+            }
+        }
+        return trigrams;
+    }
+
+    /**
+     * Gets the edit distance of two words, giving up once it is above a limit.
+     *
+     * @param a           the first word
+     * @param b           the second word
+     * @param maxDistance the limit
+     * @return the number of inserted, removed or replaced letters, or maxDistance + 1 if above the limit
+     */
+    private static int getDistance(String a, String b, int maxDistance) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int replace = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+}
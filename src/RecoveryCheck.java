@@ -0,0 +1,291 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that the reservations of a flight come back after a crash, for each way they are kept
+ * on disk: replaying the journal onto a new airplane, reading a binary snapshot, and recovering
+ * a checkpointed page file with the journal segments made after it. A crash is a process that
+ * stops without closing its files, so only what was synced is left. Every recovered airplane
+ * must show the same manifests and vacant seats as the one that crashed, and damaged files must
+ * be reported as IOExceptions.
+ * <p>
+ * Usage: java RecoveryCheck [layout file]
+ * <p>
+ * Exits with status 1 if a check fails.
+ */
+public class RecoveryCheck {
+    private static final int NUM_OF_PASSENGERS = 40;
+    private static final int GROUP_EVERY = 7;
+    private static final int CANCEL_EVERY = 5;
+    private static final byte[] TORN_RECORD = {0, 0, 0, 64, 1, 2, 3};
+
+    private final AircraftLayout layout;
+    private final File dir;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Constructor of the class
+     *
+     * @param layout the seat layout of the airplane
+     * @param dir    an empty directory for the files of the checks
+     */
+    public RecoveryCheck(AircraftLayout layout, File dir) {
+        this.layout = layout;
+        this.dir = dir;
+    }
+
+    /**
+     * Books passengers and groups in both classes and cancels some of them, so the files hold
+     * cancellations as well as reservations.
+     *
+     * @param manager the reservations of the airplane
+     * @param prefix  starts every name, so later batches do not reuse names
+     */
+    private static void book(ReservationManager manager, String prefix) {
+        SeatType[] seatTypes = SeatType.values();
+        for (int i = 0; i < NUM_OF_PASSENGERS; i++) {
+            String name = prefix + i;
+            boolean isEconomy = (i % 3 != 0);
+            if (i % GROUP_EVERY == 0) {
+                manager.makeGroupReservation(new String[]{name + " a", name + " b", name + " c"}, name, isEconomy);
+            } else {
+                // every fourth passenger has no seat preference
+                SeatType seatType = (i % 4 == 0) ? null : seatTypes[i % seatTypes.length];
+                manager.makeIndividualReservation(name, isEconomy, seatType);
+            }
+            if (i % CANCEL_EVERY == CANCEL_EVERY - 1) {
+                manager.cancel(prefix + (i - 2), (i - 2) % GROUP_EVERY == 0);
+            }
+        }
+    }
+
+    /**
+     * Describes the reservations of an airplane by its manifests and vacant seats.
+     *
+     * @param manager the reservations of the airplane
+     * @return the description
+     */
+    private static String describe(ReservationManager manager) {
+        return manager.getManifestList(false) + manager.getManifestList(true)
+                + "vacant " + manager.getVacantSeats(false) + " " + manager.getVacantSeats(true);
+    }
+
+    /**
+     * Records a failed check when a recovered airplane differs from the one that crashed.
+     *
+     * @param check     the name of the check
+     * @param expected  the description of the airplane that crashed
+     * @param recovered the recovered airplane
+     */
+    private void expectSame(String check, String expected, ReservationManager recovered) {
+        if (!expected.equals(describe(recovered))) {
+            failures.add(check + ": the recovered reservations differ");
+        }
+    }
+
+    /**
+     * Runs one check and prints its result.
+     *
+     * @param check the name of the check
+     * @param run   the check
+     */
+    private void run(String check, CheckedRunnable run) {
+        int numOfFailures = failures.size();
+        try {
+            run.run();
+        } catch (IOException | RuntimeException e) {
+            failures.add(check + ": " + e);
+        }
+        System.out.printf("%-24s %s%n", check, (failures.size() == numOfFailures) ? "OK" : "FAILED");
+    }
+
+    /**
+     * A check that may fail with an IOException.
+     */
+    private interface CheckedRunnable {
+        /**
+         * Runs the check.
+         *
+         * @throws IOException if a file cannot be read or written
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Crashes with a journal holding a torn last record and replays it onto a new airplane,
+     * then replays it again onto a snapshot that already holds the reservations.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    private void checkJournal() throws IOException {
+        File file = new File(dir, "journal");
+        ReservationManager crashed = new ReservationManager(layout, BookingMode.ROW_LOCKING);
+        ReservationJournal journal = new ReservationJournal(file);
+        crashed.setJournal(journal);
+        book(crashed, "j");
+        String expected = describe(crashed);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(TORN_RECORD);
+        }
+
+        ReservationManager recovered = new ReservationManager(layout, BookingMode.ROW_LOCKING);
+        ReservationJournal replayed = new ReservationJournal(file);
+        try {
+            replayed.replay(recovered);
+        } finally {
+            replayed.close();
+        }
+        expectSame("journal", expected, recovered);
+
+        File snapshot = new File(dir, "journal.snapshot");
+        if (!recovered.saveSnapshot(snapshot)) {
+            failures.add("journal: cannot save the snapshot");
+            return;
+        }
+        ReservationManager restored = new ReservationManager(layout, BookingMode.ROW_LOCKING);
+        restored.restoreSnapshot(snapshot);
+        replayed = new ReservationJournal(file);
+        try {
+            replayed.replay(restored);
+        } finally {
+            replayed.close();
+        }
+        expectSame("journal over a snapshot", expected, restored);
+        journal.close();
+    }
+
+    /**
+     * Restores a snapshot onto a new airplane and checks that damaged snapshots are rejected.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    private void checkSnapshot() throws IOException {
+        File file = new File(dir, "snapshot");
+        ReservationManager saved = new ReservationManager(layout, BookingMode.LOCK_FREE);
+        book(saved, "s");
+        if (!saved.saveSnapshot(file)) {
+            failures.add("snapshot: cannot save the snapshot");
+            return;
+        }
+        ReservationManager restored = new ReservationManager(layout, BookingMode.LOCK_FREE);
+        restored.restoreSnapshot(file);
+        expectSame("snapshot", describe(saved), restored);
+
+        byte[] good = Files.readAllBytes(file.toPath());
+        File damaged = new File(dir, "snapshot.damaged");
+        Files.write(damaged.toPath(), Arrays.copyOf(good, good.length / 2));
+        expectCorrupt("truncated snapshot", damaged);
+        byte[] hugeCount = good.clone();
+        // the string count follows the magic number and the version
+        hugeCount[Integer.BYTES + Short.BYTES] = Byte.MAX_VALUE;
+        Files.write(damaged.toPath(), hugeCount);
+        expectCorrupt("snapshot string count", damaged);
+    }
+
+    /**
+     * Records a failed check unless restoring a damaged snapshot throws an IOException.
+     *
+     * @param check the name of the check
+     * @param file  the damaged snapshot
+     */
+    private void expectCorrupt(String check, File file) {
+        try {
+            new ReservationManager(layout).restoreSnapshot(file);
+            failures.add(check + ": the damaged snapshot was restored");
+        } catch (IOException e) {
+            // expected
+        } catch (RuntimeException | OutOfMemoryError e) {
+            failures.add(check + ": " + e);
+        }
+    }
+
+    /**
+     * Crashes after a checkpoint and more bookings, recovers from the page file and the journal
+     * segments, and checks that closing the recovered flight leaves one journal segment.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    private void checkCheckpointer() throws IOException {
+        File baseFile = new File(dir, "flight");
+        ReservationManager crashed = new ReservationManager(layout, BookingMode.ROW_LOCKING);
+        Checkpointer checkpointer = new Checkpointer(baseFile, crashed);
+        checkpointer.recover();
+        book(crashed, "c");
+        checkpointer.checkpoint();
+        book(crashed, "d");
+        crashed.cancel("c1", false);
+        String expected = describe(crashed);
+
+        ReservationManager recovered = new ReservationManager(layout, BookingMode.ROW_LOCKING);
+        Checkpointer recovering = new Checkpointer(baseFile, recovered);
+        if (!recovering.hasCheckpoint()) {
+            failures.add("checkpoint: the page file holds no checkpoint");
+        }
+        recovering.recover();
+        expectSame("checkpoint", expected, recovered);
+        recovering.close();
+
+        ReservationManager reopened = new ReservationManager(layout, BookingMode.ROW_LOCKING);
+        Checkpointer reopening = new Checkpointer(baseFile, reopened);
+        reopening.recover();
+        expectSame("checkpoint reopened", expected, reopened);
+        reopening.close();
+
+        String prefix = baseFile.getName() + ".journal.";
+        File[] segments = dir.listFiles((d, name) -> name.startsWith(prefix));
+        if (segments == null || segments.length > 1) {
+            failures.add("checkpoint: " + ((segments == null) ? 0 : segments.length)
+                    + " journal segments left after closing, expected at most 1");
+        }
+    }
+
+    /**
+     * Runs all checks and prints the result of every one.
+     *
+     * @return true if all checks passed
+     */
+    public boolean runAll() {
+        System.out.printf("Layout %s, files in %s%n", layout.getName(), dir);
+        run("journal replay", this::checkJournal);
+        run("snapshot", this::checkSnapshot);
+        run("checkpoint recovery", this::checkCheckpointer);
+        for (String failure : failures) {
+            System.out.println("    " + failure);
+        }
+        return failures.isEmpty();
+    }
+
+    /**
+     * Deletes the files of the checks and their directory.
+     *
+     * @param dir the directory
+     */
+    private static void deleteAll(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    public static void main(String[] args) throws IOException {
+        AircraftLayout layout = (args.length > 0) ? AircraftLayout.load(new File(args[0])) : AircraftLayout.DEFAULT;
+        File dir = Files.createTempDirectory("recovery-check").toFile();
+        boolean isPassed;
+        try {
+            isPassed = new RecoveryCheck(layout, dir).runAll();
+        } finally {
+            deleteAll(dir);
+        }
+        if (!isPassed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * Measures the booking hot paths at different cabin fill levels and airplane sizes.
+ * Every benchmark reports throughput, average time and the bytes allocated per operation,
+ * so a regression in the seat engine shows up as a drop in throughput or a rise in garbage.
+ * Setup and cleanup of an operation, e.g. cancelling a booking after measuring it, are not timed.
+ * The managers use the default no-op notification sink, so no console output is measured.
+ * <p>
+ * Usage: java ReservationBenchmark [milliseconds per benchmark] [layout files...]
+ */
+public class ReservationBenchmark {
+    private static final double[] FILL_LEVELS = {0.0, 0.5, 0.95};
+    private static final SeatType[] SEAT_TYPES = SeatType.values();
+    private static final String[] GROUP_NAMES = {"Group A", "Group B", "Group C", "Group D"};
+    private static final String PAS_NAME = "Benchmark Passenger";
+    private static final String GROUP_NAME = "Benchmark Group";
+    private static final long DEFAULT_RUN_MILLIS = 500;
+    private static final double NANOS_PER_MICRO = 1e3;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final long runMillis;
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final PrintStream console;
+    private final File file;
+    private int counter = 0;
+
+    /**
+     * One step of a benchmark.
+     */
+    private interface Step {
+        /**
+         * Runs the step.
+         *
+         * @throws Exception if the step fails
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param runMillis how long every benchmark is measured
+     * @throws IOException if the temporary file cannot be created
+     */
+    public ReservationBenchmark(long runMillis) throws IOException {
+        this.runMillis = runMillis;
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        console = System.out;
+        file = File.createTempFile("reservation-benchmark", ".txt");
+        file.deleteOnExit();
+    }
+
+    /**
+     * Runs a benchmark twice, once to warm up and once to measure, and prints the result.
+     *
+     * @param name    name of the benchmark
+     * @param setup   untimed step before every operation
+     * @param op      the measured operation
+     * @param cleanup untimed step after every operation
+     * @throws Exception if a step fails
+     */
+    private void measure(String name, Step setup, Step op, Step cleanup) throws Exception {
+        measure(setup, op, cleanup);
+        long[] result = measure(setup, op, cleanup);
+        long numOfOps = result[0];
+        long nanos = Math.max(1, result[1]);
+        long bytes = result[2];
+        console.printf("  %-32s %14.0f %12.2f %12.0f %12.1f%n", name,
+                numOfOps * NANOS_PER_SECOND / nanos,
+                nanos / NANOS_PER_MICRO / numOfOps,
+                (double) bytes / numOfOps,
+                bytes / BYTES_PER_MB / (nanos / NANOS_PER_SECOND));
+    }
+
+    /**
+     * Runs the operation of a benchmark for the run time.
+     *
+     * @param setup   untimed step before every operation
+     * @param op      the measured operation
+     * @param cleanup untimed step after every operation
+     * @return the number of operations, the nanoseconds and the bytes allocated by them
+     * @throws Exception if a step fails
+     */
+    private long[] measure(Step setup, Step op, Step cleanup) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long endTime = System.nanoTime() + runMillis * 1_000_000L;
+        long numOfOps = 0;
+        long nanos = 0;
+        long bytes = 0;
+        while (System.nanoTime() < endTime) {
+            setup.run();
+            long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+            long startTime = System.nanoTime();
+            op.run();
+            nanos += System.nanoTime() - startTime;
+            bytes += threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+            cleanup.run();
+            numOfOps++;
+        }
+        return new long[]{numOfOps, nanos, bytes};
+    }
+
+    /**
+     * Creates reservations until a share of the seats of both service classes is reserved.
+     *
+     * @param manager the reservations to fill
+     * @param layout  the seat layout of the airplane
+     * @param fill    the share of seats to reserve
+     */
+    private void fill(ReservationManager manager, AircraftLayout layout, double fill) {
+        for (boolean isEconomy : new boolean[]{false, true}) {
+            int target = layout.getNumOfSeats(isEconomy) - (int) (layout.getNumOfSeats(isEconomy) * fill);
+            int type = 0;
+            while (manager.getVacantSeats(isEconomy) > target) {
+                manager.makeIndividualReservation("Filler " + counter++, isEconomy, SEAT_TYPES[type++ % SEAT_TYPES.length]);
+            }
+        }
+    }
+
+    /**
+     * Creates an airplane with a share of the seats of both service classes reserved.
+     *
+     * @param layout the seat layout of the airplane
+     * @param fill   the share of seats to reserve
+     * @return the airplane
+     */
+    private AirplaneSeats fill(AircraftLayout layout, double fill) {
+        AirplaneSeats airplane = new AirplaneSeats(layout);
+        for (boolean isEconomy : new boolean[]{false, true}) {
+            int target = layout.getNumOfSeats(isEconomy) - (int) (layout.getNumOfSeats(isEconomy) * fill);
+            int type = 0;
+            while ((isEconomy ? airplane.getEmptyEcoSeats() : airplane.getEmptyFirstSeats()) > target) {
+                Passenger pas = new Passenger("Filler " + counter++, isEconomy, SEAT_TYPES[type++ % SEAT_TYPES.length]);
+                SeatRow row = airplane.getAvailableSeatRow(isEconomy, pas.getSeatType());
+                if (row != null) {
+                    airplane.individualReservation(pas, row);
+                }
+            }
+        }
+        return airplane;
+    }
+
+    /**
+     * Runs all benchmarks on one airplane size at every fill level.
+     *
+     * @param layout the seat layout of the airplane
+     * @throws Exception if a benchmark fails
+     */
+    private void runAll(AircraftLayout layout) throws Exception {
+        for (double fillLevel : FILL_LEVELS) {
+            console.printf("%s (%d seats), %.0f%% full%n", layout.getName(),
+                    layout.getNumOfSeats(true) + layout.getNumOfSeats(false), fillLevel * 100);
+            console.printf("  %-32s %14s %12s %12s %12s%n", "benchmark", "ops/s", "avg us", "B/op", "alloc MB/s");
+
+            ReservationManager manager = new ReservationManager(layout);
+            fill(manager, layout, fillLevel);
+            int[] type = {0};
+            Step none = () -> { };
+
+            measure("makeIndividualReservation", none,
+                    () -> manager.makeIndividualReservation(PAS_NAME, true, SEAT_TYPES[type[0]++ % SEAT_TYPES.length]),
+                    () -> cancelIfReserved(manager, PAS_NAME, false));
+            measure("makeGroupReservation", none,
+                    () -> manager.makeGroupReservation(GROUP_NAMES, GROUP_NAME, true),
+                    () -> cancelIfReserved(manager, GROUP_NAME, true));
+            measure("cancelReservation",
+                    () -> manager.makeIndividualReservation(PAS_NAME, true, SEAT_TYPES[type[0]++ % SEAT_TYPES.length]),
+                    () -> cancelIfReserved(manager, PAS_NAME, false),
+                    none);
+            measure("getManifestList", none, () -> manager.getManifestList(true), none);
+            measure("getAvailabilityList", none, () -> manager.getAvailabilityList(true), none);
+            measure("saveInfoToFile", none, () -> manager.saveInfoToFile(file), none);
+            manager.saveInfoToFile(file);
+            ReservationManager[] restored = new ReservationManager[1];
+            measure("restoreInfoFromFile",
+                    () -> restored[0] = new ReservationManager(layout),
+                    () -> restored[0].restoreInfoFromFile(file),
+                    none);
+            measure("saveSnapshot", none, () -> manager.saveSnapshot(file), none);
+            manager.saveSnapshot(file);
+            measure("restoreSnapshot",
+                    () -> restored[0] = new ReservationManager(layout),
+                    () -> restored[0].restoreSnapshot(file),
+                    none);
+            measureCheckpoint(layout);
+
+            AirplaneSeats airplane = fill(layout, fillLevel);
+            GroupOfPassenger[] group = new GroupOfPassenger[1];
+            measure("AirplaneSeats.addGroup",
+                    () -> group[0] = new GroupOfPassenger(GROUP_NAMES, GROUP_NAME, true),
+                    () -> airplane.addGroup(group[0]),
+                    () -> airplane.removeGroup(group[0]));
+            measure("AirplaneSeats.getAllVacantSeats", none, () -> airplane.getAllVacantSeats(true), none);
+            console.println();
+        }
+    }
+
+    /**
+     * Measures a checkpoint after one booking or cancellation, which writes one changed row
+     * however full the airplane is.
+     *
+     * @param layout the seat layout of the airplane
+     * @throws Exception if a benchmark fails
+     */
+    private void measureCheckpoint(AircraftLayout layout) throws Exception {
+        ReservationManager manager = new ReservationManager(layout);
+        manager.restoreSnapshot(file);
+        File baseFile = new File(file.getPath() + "-" + counter++);
+        Checkpointer checkpointer = new Checkpointer(baseFile, manager);
+        checkpointer.recover();
+        checkpointer.checkpoint();
+        Step changeOneRow = () -> {
+            if (manager.isNameDuplicated(false, PAS_NAME)) {
+                manager.cancelReservation(PAS_NAME, false);
+            } else {
+                manager.makeIndividualReservation(PAS_NAME, true, SEAT_TYPES[counter++ % SEAT_TYPES.length]);
+            }
+        };
+        try {
+            measure("Checkpointer.checkpoint", changeOneRow, checkpointer::checkpoint, () -> { });
+        } finally {
+            checkpointer.close();
+            File[] files = baseFile.getAbsoluteFile().getParentFile().listFiles(
+                    (dir, name) -> name.startsWith(baseFile.getName()));
+            if (files != null) {
+                for (File checkpointFile : files) {
+                    checkpointFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels a reservation if the name is on the reservation list.
+     *
+     * @param manager the reservations
+     * @param name    the passenger or group name
+     * @param isGroup true for a group
+     * @throws Exception if the cancellation fails
+     */
+    private static void cancelIfReserved(ReservationManager manager, String name, boolean isGroup) throws Exception {
+        if (manager.isNameDuplicated(isGroup, name)) {
+            manager.cancelReservation(name, isGroup);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long runMillis = (args.length > 0) ? Long.parseLong(args[0]) : DEFAULT_RUN_MILLIS;
+        ArrayList<AircraftLayout> layouts = new ArrayList<>();
+        layouts.add(AircraftLayout.DEFAULT);
+        for (int i = 1; i < args.length; i++) {
+            layouts.add(AircraftLayout.load(new File(args[i])));
+        }
+
+        ReservationBenchmark benchmark = new ReservationBenchmark(runMillis);
+        for (AircraftLayout layout : layouts) {
+            benchmark.runAll(layout);
+        }
+    }
+}
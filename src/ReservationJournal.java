@@ -0,0 +1,434 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead journal of reservations and cancellations. Every record is written
+ * through a FileChannel before the booking is reported as done, so bookings made since the last
+ * saved file survive a crash. A record holds its length, the payload and a CRC32 of the payload;
+ * a torn record at the end of the file is dropped when the journal is replayed.
+ * <p>
+ * When records are synced to the disk, threads appending at the same time share one fsync:
+ * the first thread to wait syncs everything written so far and the others wait for it.
+ * If a sync fails, the records written since the last sync are cut off the file and every thread
+ * waiting for them fails, so a booking reported as failed is not replayed; the journal then refuses
+ * new records until it is reset after the reservations are saved.
+ */
+public class ReservationJournal {
+    private static final byte INDIVIDUAL_RESERVED = 1;
+    private static final byte GROUP_RESERVED = 2;
+    private static final byte INDIVIDUAL_CANCELLED = 3;
+    private static final byte GROUP_CANCELLED = 4;
+    private static final int FRAME_SIZE = 2 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private volatile boolean isSyncOnCommit;
+    private final Object writeLock = new Object();
+    private long writtenPosition;
+    private long syncedPosition;
+    private boolean isSyncing = false;
+    private IOException failure;
+    private final ThreadLocal<long[]> deferredEnd = new ThreadLocal<>();
+
+    /**
+     * Constructor of the class that syncs every record to the disk before returning.
+     *
+     * @param file the journal file, created if it does not exist
+     * @throws IOException if the file cannot be opened
+     */
+    public ReservationJournal(File file) throws IOException {
+        this(file, true);
+    }
+
+    /**
+     * Constructor of the class. The journal should be replayed before new records are appended.
+     *
+     * @param file           the journal file, created if it does not exist
+     * @param isSyncOnCommit true to sync every record to the disk before returning
+     * @throws IOException if the file cannot be opened
+     */
+    public ReservationJournal(File file, boolean isSyncOnCommit) throws IOException {
+        this.isSyncOnCommit = isSyncOnCommit;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writtenPosition = channel.size();
+        syncedPosition = writtenPosition;
+    }
+
+    /**
+     * Records an individual reservation with its seat.
+     *
+     * @param pas the reserved passenger
+     * @throws IOException if the record cannot be written
+     */
+    public void logIndividualReservation(Passenger pas) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Seat seat = pas.getSeat();
+        out.writeByte(INDIVIDUAL_RESERVED);
+        out.writeUTF(pas.getName());
+        out.writeBoolean(pas.isEconomy());
+        out.writeUTF(pas.getSeatPref());
+        out.writeInt(seat.getRow());
+        out.writeByte(seat.getCol());
+        append(bytes);
+    }
+
+    /**
+     * Records a group reservation with the seats of all passengers.
+     *
+     * @param group the reserved group
+     * @throws IOException if the record cannot be written
+     */
+    public void logGroupReservation(GroupOfPassenger group) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Passenger> passengers = group.getPassengerGroup();
+        out.writeByte(GROUP_RESERVED);
+        out.writeUTF(group.getGroupName());
+        out.writeBoolean(group.isEconomy());
+        out.writeInt(passengers.size());
+        for (Passenger pas : passengers) {
+            Seat seat = pas.getSeat();
+            out.writeUTF(pas.getName());
+            out.writeInt(seat.getRow());
+            out.writeByte(seat.getCol());
+        }
+        append(bytes);
+    }
+
+    /**
+     * Records a cancellation.
+     *
+     * @param name    name of the passenger or group
+     * @param isGroup true for a group
+     * @throws IOException if the record cannot be written
+     */
+    public void logCancellation(String name, boolean isGroup) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(isGroup ? GROUP_CANCELLED : INDIVIDUAL_CANCELLED);
+        out.writeUTF(name);
+        append(bytes);
+    }
+
+    /**
+     * Frames a payload with its length and checksum, appends it and waits for it to be synced.
+     *
+     * @param payload the encoded record
+     * @throws IOException if the record cannot be written
+     */
+    private void append(ByteArrayOutputStream payload) throws IOException {
+        byte[] data = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer record = ByteBuffer.allocate(FRAME_SIZE + data.length);
+        record.putInt(data.length).put(data).putInt((int) crc.getValue()).flip();
+
+        long end;
+        synchronized (writeLock) {
+            checkNotFailed();
+            long position = writtenPosition;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            writtenPosition = position;
+            end = position;
+        }
+        long[] deferred = deferredEnd.get();
+        if (deferred != null) {
+            deferred[0] = Math.max(deferred[0], end);
+        } else if (isSyncOnCommit) {
+            awaitSync(end);
+        }
+    }
+
+    /**
+     * Lets the records this thread appends from now on return before they are synced, until
+     * endDeferredSync syncs them all at once. Records of other threads are synced as usual.
+     */
+    public void beginDeferredSync() {
+        deferredEnd.set(new long[1]);
+    }
+
+    /**
+     * Syncs the records this thread appended since beginDeferredSync, unless the journal does not
+     * sync on commit, and lets its records be synced one by one again.
+     *
+     * @throws IOException if the records cannot be synced; they are then cut off the journal
+     */
+    public void endDeferredSync() throws IOException {
+        long[] deferred = deferredEnd.get();
+        deferredEnd.remove();
+        if (deferred != null && deferred[0] > 0 && isSyncOnCommit) {
+            awaitSync(deferred[0]);
+        }
+    }
+
+    /**
+     * Checks if a sync failed, in which case the journal refuses records until it is reset.
+     *
+     * @return true if the journal refuses records
+     */
+    public synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Waits until the journal is synced up to a position. If no other thread is syncing,
+     * this thread syncs everything written so far on behalf of all waiting threads.
+     *
+     * @param position the end of the record that must be on the disk
+     * @throws IOException if the journal cannot be synced
+     */
+    private void awaitSync(long position) throws IOException {
+        while (true) {
+            synchronized (this) {
+                while (syncedPosition < position && isSyncing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the journal sync");
+                    }
+                }
+                if (syncedPosition >= position) {
+                    return;
+                }
+                checkNotFailed();
+                isSyncing = true;
+            }
+
+            long target;
+            synchronized (writeLock) {
+                target = writtenPosition;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                discardUnsynced(e);
+                throw e;
+            }
+            synchronized (this) {
+                isSyncing = false;
+                syncedPosition = Math.max(syncedPosition, target);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Cuts the records written since the last sync off the file after a sync failed and refuses
+     * new records, so the threads waiting for those records fail and nothing they reported as
+     * failed is replayed.
+     *
+     * @param cause the failure of the sync
+     */
+    private void discardUnsynced(IOException cause) {
+        synchronized (writeLock) {
+            long synced;
+            synchronized (this) {
+                synced = syncedPosition;
+            }
+            try {
+                channel.truncate(synced);
+                channel.force(false);
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+            writtenPosition = Math.min(writtenPosition, synced);
+            synchronized (this) {
+                failure = cause;
+                isSyncing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Fails if an earlier sync failed and the journal was not reset since.
+     *
+     * @throws IOException if the journal refuses new records
+     */
+    private void checkNotFailed() throws IOException {
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("The journal failed to sync and must be reset", failure);
+            }
+        }
+    }
+
+    /**
+     * Sets if every record is synced to the disk before the booking is reported as done.
+     *
+     * @param isSyncOnCommit true to sync every record, false to sync only when sync is called
+     */
+    public void setSyncOnCommit(boolean isSyncOnCommit) {
+        this.isSyncOnCommit = isSyncOnCommit;
+    }
+
+    /**
+     * Checks if every record is synced to the disk before the booking is reported as done.
+     *
+     * @return true if every record is synced
+     */
+    public boolean isSyncOnCommit() {
+        return isSyncOnCommit;
+    }
+
+    /**
+     * Syncs all records written so far to the disk.
+     *
+     * @throws IOException if the journal cannot be synced
+     */
+    public void sync() throws IOException {
+        awaitSync(size());
+    }
+
+    /**
+     * Applies the records of the journal to the reservations and drops a torn record at the end.
+     * Records that are already part of the reservations, e.g. because the journal was not reset
+     * after the last save, are skipped.
+     *
+     * @param manager the reservations restored from the last saved file
+     * @return the number of records applied
+     * @throws IOException if the journal cannot be read
+     */
+    public int replay(ReservationManager manager) throws IOException {
+        synchronized (writeLock) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The journal is too large to replay: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+
+            int numOfApplied = 0;
+            int validEnd = 0;
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= FRAME_SIZE) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining() - Integer.BYTES) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                buffer.get(data);
+                crc.reset();
+                crc.update(data);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    break;
+                }
+                if (apply(manager, data)) {
+                    numOfApplied++;
+                }
+                validEnd = buffer.position();
+            }
+
+            if (validEnd < size) {
+                channel.truncate(validEnd);
+                channel.force(false);
+            }
+            writtenPosition = validEnd;
+            synchronized (this) {
+                syncedPosition = validEnd;
+                failure = null;
+            }
+            return numOfApplied;
+        }
+    }
+
+    /**
+     * Applies one record to the reservations.
+     *
+     * @param manager the reservations
+     * @param data    the payload of the record
+     * @return true if the record changed the reservations
+     * @throws IOException if the record cannot be decoded
+     */
+    private static boolean apply(ReservationManager manager, byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte type = in.readByte();
+        switch (type) {
+            case INDIVIDUAL_RESERVED: {
+                String name = in.readUTF();
+                boolean isEconomy = in.readBoolean();
+                String seatPref = in.readUTF();
+                int row = in.readInt();
+                int col = in.readByte();
+                return manager.replayIndividualReservation(name, isEconomy, seatPref, row, col);
+            }
+            case GROUP_RESERVED: {
+                String gName = in.readUTF();
+                boolean isEconomy = in.readBoolean();
+                int size = in.readInt();
+                String[] names = new String[size];
+                int[] rows = new int[size];
+                int[] cols = new int[size];
+                for (int i = 0; i < size; i++) {
+                    names[i] = in.readUTF();
+                    rows[i] = in.readInt();
+                    cols[i] = in.readByte();
+                }
+                return manager.replayGroupReservation(gName, isEconomy, names, rows, cols);
+            }
+            case INDIVIDUAL_CANCELLED:
+                return manager.replayCancellation(in.readUTF(), false);
+            case GROUP_CANCELLED:
+                return manager.replayCancellation(in.readUTF(), true);
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Empties the journal after all reservations are saved to a file, which also lets it take
+     * records again after a failed sync. No records may be appended while the journal is reset.
+     *
+     * @throws IOException if the journal cannot be truncated
+     */
+    public void reset() throws IOException {
+        synchronized (writeLock) {
+            channel.truncate(0);
+            channel.force(false);
+            writtenPosition = 0;
+            synchronized (this) {
+                syncedPosition = 0;
+                failure = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the size of the records written so far.
+     *
+     * @return the size in bytes
+     */
+    public long size() {
+        synchronized (writeLock) {
+            return writtenPosition;
+        }
+    }
+
+    /**
+     * Closes the journal file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,29 +1,247 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Methods for managing the airplane reservations.
  */
 public class ReservationManager {
-    private final static int CONVERT_NUM_TO_CHAR = 65;
+    public static final int MAX_NAME_BYTES = 128;
     private static final String WIN_SEAT = "W";
     private static final String CEN_SEAT = "C";
     private static final String AIS_SEAT = "A";
     private final static String FIRST_CLASS = "First Class";
     private final static String ECONOMY_CLASS = "Economy Class";
-    private Hashtable<String, Passenger> individualReservedList;
-    private Hashtable<String, GroupOfPassenger> groupReservedList;
+    private static final Passenger PENDING_PASSENGER = new Passenger("", false, (SeatType) null);
+    private static final GroupOfPassenger PENDING_GROUP = new GroupOfPassenger(new String[0], "", false);
+    private final ConcurrentHashMap<String, Passenger> individualReservedList;
+    private final ConcurrentHashMap<String, GroupOfPassenger> groupReservedList;
     private AirplaneSeats airplane;
+    private NotificationSink notificationSink = NoOpNotificationSink.INSTANCE;
+    private ReservationMetrics metrics = NoOpReservationMetrics.INSTANCE;
+    private ReservationJournal journal;
+    private ReentrantReadWriteLock checkpointLock;
+    private final AvailabilityChart[] availabilityCharts = new AvailabilityChart[2];
+    private volatile PassengerSearchIndex searchIndex;
+    private volatile boolean isSearchIndexBuilt = false;
+    private final ConcurrentHashMap<String, SeatHold> seatHolds = new ConcurrentHashMap<>();
+    private TimingWheel holdTimer = TimingWheel.getDefault();
+    private Executor waitlistExecutor;
+    private final Waitlist waitlist;
+    private final AtomicInteger waitlistDrains = new AtomicInteger();
 
     /**
-     * Initializes variables.
+     * A seat held for a passenger until the booking is confirmed, released or the hold expires.
+     * Whoever removes the hold from seatHolds confirms, releases or expires it.
+     */
+    private static final class SeatHold {
+        private final Passenger passenger;
+        private volatile TimingWheel.Timeout expiry;
+
+        /**
+         * Constructor of the class
+         * @param passenger the passenger holding the seat.
+         */
+        private SeatHold(Passenger passenger) {
+            this.passenger = passenger;
+        }
+    }
+
+    /**
+     * The threads seating waiting requests on the seats of expired holds, started the first time
+     * a hold expires with requests waiting.
+     */
+    private static class DefaultWaitlistExecutorHolder {
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "waitlist-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The rendered availability chart of a service class and the version of the seats it shows.
+     */
+    private static final class AvailabilityChart {
+        private final long version;
+        private final String text;
+
+        /**
+         * Constructor of the class
+         * @param version the version of the seats of the service class.
+         * @param text the rendered chart.
+         */
+        private AvailabilityChart(long version, String text) {
+            this.version = version;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Initializes variables using the default airplane layout.
      */
     public ReservationManager() {
-        airplane = new AirplaneSeats();
-        individualReservedList = new Hashtable<String, Passenger>();
-        groupReservedList = new Hashtable<String, GroupOfPassenger>();
+        this(AircraftLayout.DEFAULT);
+    }
+
+    /**
+     * Initializes variables.
+     * @param layout the seat layout of the airplane.
+     */
+    public ReservationManager(AircraftLayout layout) {
+        this(layout, BookingMode.SINGLE_THREADED);
+    }
+
+    /**
+     * Initializes variables.
+     * @param layout the seat layout of the airplane.
+     * @param bookingMode how the seats are protected against concurrent bookings.
+     */
+    public ReservationManager(AircraftLayout layout, BookingMode bookingMode) {
+        airplane = new AirplaneSeats(layout, bookingMode);
+        waitlist = new Waitlist(airplane.getWidestRow(false), airplane.getWidestRow(true));
+        individualReservedList = new ConcurrentHashMap<String, Passenger>();
+        groupReservedList = new ConcurrentHashMap<String, GroupOfPassenger>();
+    }
+
+
+    /**
+     * Accessor of the booking mode.
+     * @return how the seats are protected against concurrent bookings.
+     */
+    public BookingMode getBookingMode() {
+        return airplane.getBookingMode();
+    }
+
+    /**
+     * Sets where the notifications about reserved and cancelled seats go.
+     * @param sink the notification sink.
+     */
+    public void setNotificationSink(NotificationSink sink) {
+        notificationSink = sink;
+    }
+
+    /**
+     * Sets where the timings of the operations and the outcomes of the bookings are recorded.
+     * @param metrics the metrics recorder, NoOpReservationMetrics.INSTANCE to record nothing.
+     */
+    public void setMetrics(ReservationMetrics metrics) {
+        this.metrics = metrics;
+        airplane.setMetrics(metrics);
+    }
+
+    /**
+     * Accessor of the metrics recorder.
+     * @return where the timings of the operations are recorded.
+     */
+    ReservationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the journal every reservation and cancellation is recorded in before it is reported as done.
+     * @param journal the journal, or null to stop recording.
+     */
+    public void setJournal(ReservationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Accessor of the journal.
+     * @return the journal, or null if bookings are not recorded.
+     */
+    ReservationJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the timing wheel expiring the seat holds, the shared one by default.
+     * @param holdTimer the timing wheel.
+     */
+    void setHoldTimer(TimingWheel holdTimer) {
+        this.holdTimer = holdTimer;
     }
 
+    /**
+     * Checks if seats are held for bookings not confirmed yet or bookings wait on the waitlist.
+     * Neither is saved, so such a flight should stay loaded.
+     * @return true if there are seats held or bookings waiting.
+     */
+    public boolean hasUnsavedRequests() {
+        return !seatHolds.isEmpty() || !waitlist.isEmpty(true) || !waitlist.isEmpty(false);
+    }
+
+    /**
+     * Accessor of the seat layout.
+     * @return the seat layout of the airplane.
+     */
+    public AircraftLayout getLayout() {
+        return airplane.getLayout();
+    }
+
+    /**
+     * Makes reservations and cancellations wait while a checkpoint takes the changed rows.
+     * Must be called before any bookings are made.
+     */
+    void enableCheckpoints() {
+        checkpointLock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Marks the start of a reservation or cancellation, waiting while a checkpoint takes the changed rows.
+     */
+    private void beginUpdate() {
+        if (checkpointLock != null) {
+            checkpointLock.readLock().lock();
+        }
+    }
+
+    /**
+     * Marks the end of a reservation or cancellation.
+     */
+    private void endUpdate() {
+        if (checkpointLock != null) {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until no reservation or cancellation is in progress and holds off new ones,
+     * so the seat rows and the journal agree with each other.
+     */
+    void lockUpdates() {
+        checkpointLock.writeLock().lock();
+    }
+
+    /**
+     * Lets reservations and cancellations continue after lockUpdates.
+     */
+    void unlockUpdates() {
+        checkpointLock.writeLock().unlock();
+    }
+
+    /**
+     * Takes the seat rows changed since the last checkpoint.
+     * @return the changed seat rows.
+     */
+    ArrayList<SeatRow> takeDirtyRows() {
+        return airplane.takeDirtyRows();
+    }
+
+    /**
+     * Marks seat rows as changed again when they could not be saved.
+     * @param rows the seat rows.
+     */
+    void markRowsDirty(List<SeatRow> rows) {
+        airplane.markRowsDirty(rows);
+    }
 
     /**
      * Gets total vacant seats.
@@ -40,26 +258,81 @@ public class ReservationManager {
      * @param name Passanger's name.
      * @param isEconomy True if sitting in economy.
      * @param seatPref Type of seat they want.
-     * @return True if successful.
+     * @return The result holding the reserved passenger, NO_SEAT_AVAILABLE if there is no seat of the type,
+     * FAILED if the reservation cannot be recorded in the journal.
      */
-    public boolean makeIndividualReservation(String name, boolean isEconomy, String seatPref) {
-        System.out.println("SeatPref " + seatPref);
-        SeatRow row = airplane.getAvailableSeatRow(isEconomy, seatPref);
-        if (row != null) {
-            Passenger pas = new Passenger(name, isEconomy, seatPref);
-            if (airplane.individualReservation(pas, row)) {
-                Seat assignedSeat = pas.getSeat();
-                popReservationNotification(assignedSeat.getRow(), assignedSeat.getCol(), pas.getName());
-                individualReservedList.put(pas.getName(), pas);
-                return true;
+    public ReservationResult makeIndividualReservation(String name, boolean isEconomy, String seatPref) {
+        return makeIndividualReservation(name, isEconomy, SeatType.fromCode(seatPref));
+    }
+
+    /**
+     * Creates a single reservation.
+     * @param name Passanger's name.
+     * @param isEconomy True if sitting in economy.
+     * @param seatType Type of seat they want, null if unknown.
+     * @return The result holding the reserved passenger, NO_SEAT_AVAILABLE if there is no seat of the type,
+     * NAME_TAKEN if the passenger already has a seat, NAME_TOO_LONG if the name is longer than MAX_NAME_BYTES,
+     * FAILED if the reservation cannot be recorded in the journal.
+     */
+    public ReservationResult makeIndividualReservation(String name, boolean isEconomy, SeatType seatType) {
+        long startTime = metrics.startTimer();
+        ReservationResult result = reserveIndividual(name, isEconomy, seatType);
+        metrics.record(ReservationMetrics.Operation.INDIVIDUAL_RESERVATION, startTime, result.getStatus());
+        stopWaiting(result, false);
+        return result;
+    }
+
+    /**
+     * Finds and claims a seat for a single reservation and records it in the journal.
+     * The name is claimed first, so two bookings of the same name never both get a seat.
+     * @param name Passanger's name.
+     * @param isEconomy True if sitting in economy.
+     * @param seatType Type of seat they want.
+     * @return The result of the reservation.
+     */
+    private ReservationResult reserveIndividual(String name, boolean isEconomy, SeatType seatType) {
+        if (isNameTooLong(name)) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TOO_LONG, name);
+        }
+        if (individualReservedList.putIfAbsent(name, PENDING_PASSENGER) != null) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TAKEN, name);
+        }
+        Passenger pas = new Passenger(name, isEconomy, seatType);
+        boolean isReserved = false;
+        SeatRow row;
+        beginUpdate();
+        try {
+            while ((row = airplane.getAvailableSeatRow(isEconomy, seatType)) != null) {
+                if (airplane.individualReservation(pas, row)) {
+                    if (journal != null) {
+                        long journalStartTime = metrics.startTimer();
+                        try {
+                            journal.logIndividualReservation(pas);
+                            metrics.record(ReservationMetrics.Operation.JOURNAL_WRITE, journalStartTime);
+                        } catch (IOException e) {
+                            airplane.removeIndividual(pas);
+                            return ReservationResult.of(ReservationResult.Status.FAILED, name);
+                        }
+                    }
+                    Seat assignedSeat = pas.getSeat();
+                    notificationSink.seatReserved(assignedSeat.getRow(), assignedSeat.getCol(), pas.getName());
+                    individualReservedList.put(name, pas);
+                    indexForSearch(pas);
+                    isReserved = true;
+                    return new ReservationResult(ReservationResult.Status.RESERVED, name, Collections.singletonList(pas));
+                }
             }
+        } finally {
+            if (!isReserved) {
+                individualReservedList.remove(name, PENDING_PASSENGER);
+            }
+            endUpdate();
         }
-        System.out.println("No more seats for this type. Please choose another seat preference");
-        return false;
+        return ReservationResult.of(ReservationResult.Status.NO_SEAT_AVAILABLE, name);
     }
 
     /**
-     * Checks duplicate name
+     * Checks duplicate name. A name being booked or cancelled counts as taken.
      * @param isGrouped true if is a group name, false if it is a individual passenger name.
      * @param name  name of passenger or group
      * @return true if name is in the system
@@ -73,26 +346,23 @@ public class ReservationManager {
     }
 
     /**
-     * Tells the user the reservation is successful.
-     * @param row The seat row.
-     * @param col The seat column.
-     * @param name The person's name.
+     * Checks if a name is too long to be booked. The names of a row are saved together,
+     * so a row full of the longest names must still fit in a page of the page file.
+     * @param name  name of passenger or group
+     * @return true if the name takes more than MAX_NAME_BYTES bytes in UTF-8
      */
-    private void popReservationNotification(int row, int col, String name) {
-        System.out.printf("Seat %d%s is successfully reserved for %s.\n",
-                row, convertSeatColToString(col), name);
+    public static boolean isNameTooLong(String name) {
+        // a char takes at most 3 bytes in UTF-8, so short names are not encoded
+        return name.length() * 3 > MAX_NAME_BYTES && name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES;
     }
 
     /**
-     * Tells the user the reservation was canceled.
+     * Tells the notification sink the reservation was canceled.
      * @param p The passenger.
      */
     private void popCancellationNotification(Passenger p) {
         Seat s = p.getSeat();
-        int row = s.getRow();
-        int col = s.getCol();
-        System.out.printf("Successfully canceled seat %d%s for %s.\n",
-                 row, convertSeatColToString(col),p.getName());
+        notificationSink.seatCancelled(s.getRow(), s.getCol(), p.getName());
     }
 
 
@@ -101,56 +371,526 @@ public class ReservationManager {
      * @param names Names of passengers in the group.
      * @param gName Name of the group.
      * @param isEconomy True if the reservation is economy class.
-     * @return True if successful.
+     * @return The result holding the reserved passengers, NO_SEAT_AVAILABLE if the group does not fit,
+     * NAME_TAKEN if the group already has seats, NAME_TOO_LONG if the group name or a passenger name is longer
+     * than MAX_NAME_BYTES, FAILED if the reservation cannot be recorded in the journal.
+     */
+    public ReservationResult makeGroupReservation(String[] names, String gName, boolean isEconomy) {
+        long startTime = metrics.startTimer();
+        ReservationResult result = reserveGroup(names, gName, isEconomy);
+        metrics.record(ReservationMetrics.Operation.GROUP_RESERVATION, startTime, result.getStatus());
+        stopWaiting(result, true);
+        return result;
+    }
+
+    /**
+     * Finds and claims adjacent seats for a group reservation and records it in the journal.
+     * The group name is claimed first, so two bookings of the same group never both get seats.
+     * @param names Names of passengers in the group.
+     * @param gName Name of the group.
+     * @param isEconomy True if the reservation is economy class.
+     * @return The result of the reservation.
      */
-    public boolean makeGroupReservation(String[] names, String gName, boolean isEconomy) {
+    private ReservationResult reserveGroup(String[] names, String gName, boolean isEconomy) {
+        if (isNameTooLong(gName) || Arrays.stream(names).anyMatch(ReservationManager::isNameTooLong)) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TOO_LONG, gName);
+        }
+        if (groupReservedList.putIfAbsent(gName, PENDING_GROUP) != null) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TAKEN, gName);
+        }
         GroupOfPassenger group = new GroupOfPassenger(names, gName, isEconomy);
-        if (airplane.addGroup(group)) {
-            for (Passenger k : group.getPassengerGroup()) {
-                Seat s = k.getSeat();
-                popReservationNotification(s.getRow(), s.getCol(), k.getName());
+        boolean isReserved = false;
+        beginUpdate();
+        try {
+            if (airplane.addGroup(group)) {
+                if (journal != null) {
+                    long journalStartTime = metrics.startTimer();
+                    try {
+                        journal.logGroupReservation(group);
+                        metrics.record(ReservationMetrics.Operation.JOURNAL_WRITE, journalStartTime);
+                    } catch (IOException e) {
+                        airplane.removeGroup(group);
+                        return ReservationResult.of(ReservationResult.Status.FAILED, gName);
+                    }
+                }
+                for (Passenger k : group.getPassengerGroup()) {
+                    Seat s = k.getSeat();
+                    notificationSink.seatReserved(s.getRow(), s.getCol(), k.getName());
+                }
+                groupReservedList.put(gName, group);
+                indexForSearch(group);
+                isReserved = true;
+                return new ReservationResult(ReservationResult.Status.RESERVED, gName, group.getPassengerGroup());
             }
-            groupReservedList.put(group.getGroupName(), group);
-            ArrayList<String> key =  new ArrayList<>(groupReservedList.keySet());
-            for (String k : key) {
+        } finally {
+            if (!isReserved) {
+                groupReservedList.remove(gName, PENDING_GROUP);
             }
-
-           return true;
+            endUpdate();
         }
-        return false;
-
+        return ReservationResult.of(ReservationResult.Status.NO_SEAT_AVAILABLE, gName);
     }
 
 
     /**
-     * Cancels a reservation.
+     * Cancels a reservation. The cancellation is recorded in the journal before the seats are freed,
+     * so a seat is never reserved again in the journal before it is cancelled.
      * @param name Name for the person or group.
      * @param isGroup True for group.
      * @return True if successful.
      * @throws Exception If the name is invalid.
      */
     public boolean cancelReservation(String name, boolean isGroup) throws Exception {
-        if (isGroup && groupReservedList.containsKey(name)) {
-            GroupOfPassenger group = groupReservedList.get(name);
-            if (airplane.removeGroup(group)) {
-                for (Passenger k : group.getPassengerGroup()) {
-                    popCancellationNotification(k);
+        ReservationResult result = cancel(name, isGroup);
+        if (result.getStatus() == ReservationResult.Status.NOT_FOUND) {
+            throw new Exception();
+        }
+        return result.isSuccessful();
+    }
+
+    /**
+     * Cancels a reservation without throwing for unknown names. The cancellation is recorded
+     * in the journal before the seats are freed, and the freed seats go to the waitlist.
+     * The name is taken off the waitlist first, so the freed seats are not given back to it.
+     * @param name Name for the person or group.
+     * @param isGroup True for group.
+     * @return The result holding the passengers whose seats were freed, none if the name was only waiting,
+     * NOT_FOUND if the name has no reservation, FAILED if the cancellation cannot be recorded in the journal.
+     */
+    public ReservationResult cancel(String name, boolean isGroup) {
+        long startTime = metrics.startTimer();
+        ReservationResult waiting = leaveWaitlist(name, isGroup);
+        ReservationResult result = cancelAndLog(name, isGroup);
+        if (result.getStatus() == ReservationResult.Status.NOT_FOUND) {
+            result = waiting;
+        }
+        metrics.record(ReservationMetrics.Operation.CANCELLATION, startTime, result.getStatus());
+        if (!result.getPassengers().isEmpty()) {
+            drainWaitlist();
+        }
+        return result;
+    }
+
+    /**
+     * Records a cancellation in the journal and frees the seats. The name is marked as pending
+     * first, so a name being booked is not found and two cancellations of one name do not both run.
+     * @param name Name for the person or group.
+     * @param isGroup True for group.
+     * @return The result of the cancellation.
+     */
+    private ReservationResult cancelAndLog(String name, boolean isGroup) {
+        beginUpdate();
+        try {
+            if (isGroup) {
+                GroupOfPassenger group = groupReservedList.get(name);
+                if (group == null || group == PENDING_GROUP || !groupReservedList.replace(name, group, PENDING_GROUP)) {
+                    return ReservationResult.of(ReservationResult.Status.NOT_FOUND, name);
+                }
+                if (logCancellation(name, true) && airplane.removeGroup(group)) {
+                    for (Passenger k : group.getPassengerGroup()) {
+                        popCancellationNotification(k);
+                    }
+                    groupReservedList.remove(name);
+                    unindexForSearch(group);
+                    return new ReservationResult(ReservationResult.Status.CANCELLED, name, group.getPassengerGroup());
+                }
+                groupReservedList.put(name, group);
+            } else {
+                Passenger pas = individualReservedList.get(name);
+                if (pas == null || pas == PENDING_PASSENGER || !individualReservedList.replace(name, pas, PENDING_PASSENGER)) {
+                    return ReservationResult.of(ReservationResult.Status.NOT_FOUND, name);
+                }
+                if (logCancellation(name, false) && airplane.removeIndividual(pas)) {
+                    popCancellationNotification(pas);
+                    individualReservedList.remove(name);
+                    unindexForSearch(pas);
+                    return new ReservationResult(ReservationResult.Status.CANCELLED, name, Collections.singletonList(pas));
                 }
-                groupReservedList.remove(name);
+                individualReservedList.put(name, pas);
+            }
+            return ReservationResult.of(ReservationResult.Status.FAILED, name);
+        } finally {
+            endUpdate();
+        }
+    }
 
-                return true;
+    /**
+     * Records a cancellation in the journal.
+     * @param name Name for the person or group.
+     * @param isGroup True for group.
+     * @return False if the cancellation cannot be recorded.
+     */
+    private boolean logCancellation(String name, boolean isGroup) {
+        if (journal != null) {
+            long journalStartTime = metrics.startTimer();
+            try {
+                journal.logCancellation(name, isGroup);
+                metrics.record(ReservationMetrics.Operation.JOURNAL_WRITE, journalStartTime);
+            } catch (IOException e) {
+                return false;
             }
-        } else if (!isGroup && individualReservedList.containsKey(name)) {
-            Passenger pas = individualReservedList.get(name);
-            if (airplane.removeIndividual(pas)) {
-                popCancellationNotification(pas);
-                individualReservedList.remove(name);
-                return true;
+        }
+        return true;
+    }
+
+    /**
+     * Holds a seat for a passenger while the booking is paid for. The held seat is not offered to
+     * other bookings but the passenger is not in the manifest, the journal or the saved seats until
+     * the hold is confirmed. The hold is released when it expires.
+     * @param name Passanger's name.
+     * @param isEconomy True if sitting in economy.
+     * @param seatType Type of seat they want, null if unknown.
+     * @param ttlMillis how long the seat is held, to within a tick of the timing wheel.
+     * @return The result holding the passenger and the held seat, NO_SEAT_AVAILABLE if there is no seat of the type,
+     * NAME_TAKEN if the passenger already has or holds a seat, NAME_TOO_LONG if the name is longer than MAX_NAME_BYTES.
+     */
+    public ReservationResult holdSeat(String name, boolean isEconomy, SeatType seatType, long ttlMillis) {
+        long startTime = metrics.startTimer();
+        ReservationResult result = holdIndividual(name, isEconomy, seatType, ttlMillis);
+        metrics.record(ReservationMetrics.Operation.SEAT_HOLD, startTime, result.getStatus());
+        return result;
+    }
+
+    /**
+     * Finds and holds a seat and schedules the expiry of the hold. The name stays claimed while
+     * the seat is held, so the passenger cannot book or hold another seat meanwhile.
+     * @param name Passanger's name.
+     * @param isEconomy True if sitting in economy.
+     * @param seatType Type of seat they want.
+     * @param ttlMillis how long the seat is held.
+     * @return The result of the hold.
+     */
+    private ReservationResult holdIndividual(String name, boolean isEconomy, SeatType seatType, long ttlMillis) {
+        if (isNameTooLong(name)) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TOO_LONG, name);
+        }
+        if (individualReservedList.putIfAbsent(name, PENDING_PASSENGER) != null) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TAKEN, name);
+        }
+        Passenger pas = new Passenger(name, isEconomy, seatType);
+        SeatRow row;
+        beginUpdate();
+        try {
+            while ((row = airplane.getAvailableSeatRow(isEconomy, seatType)) != null) {
+                if (airplane.holdIndividual(pas, row)) {
+                    SeatHold hold = new SeatHold(pas);
+                    seatHolds.put(name, hold);
+                    // an expiry that runs after the hold is confirmed or released finds no hold and does nothing
+                    hold.expiry = holdTimer.schedule(() -> expireHold(name, hold), ttlMillis);
+                    return new ReservationResult(ReservationResult.Status.HELD, name, Collections.singletonList(pas));
+                }
+            }
+        } finally {
+            endUpdate();
+        }
+        individualReservedList.remove(name, PENDING_PASSENGER);
+        return ReservationResult.of(ReservationResult.Status.NO_SEAT_AVAILABLE, name);
+    }
+
+    /**
+     * Turns a held seat into a reservation and records it in the journal.
+     * @param name Passanger's name.
+     * @return The result holding the reserved passenger, NOT_FOUND if the passenger holds no seat, e.g. after
+     * the hold expired, FAILED if the reservation cannot be recorded in the journal, which releases the seat
+     * to the waitlist.
+     */
+    public ReservationResult confirmHold(String name) {
+        long startTime = metrics.startTimer();
+        ReservationResult result = confirmHeldSeat(name);
+        metrics.record(ReservationMetrics.Operation.HOLD_CONFIRMATION, startTime, result.getStatus());
+        if (result.getStatus() == ReservationResult.Status.FAILED) {
+            drainWaitlist();
+        }
+        return result;
+    }
+
+    /**
+     * Takes a hold and books its seat.
+     * @param name Passanger's name.
+     * @return The result of the confirmation.
+     */
+    private ReservationResult confirmHeldSeat(String name) {
+        SeatHold hold = seatHolds.remove(name);
+        if (hold == null) {
+            return ReservationResult.of(ReservationResult.Status.NOT_FOUND, name);
+        }
+        cancelExpiry(hold);
+        Passenger pas = hold.passenger;
+        beginUpdate();
+        try {
+            if (journal != null) {
+                long journalStartTime = metrics.startTimer();
+                try {
+                    journal.logIndividualReservation(pas);
+                    metrics.record(ReservationMetrics.Operation.JOURNAL_WRITE, journalStartTime);
+                } catch (IOException e) {
+                    freeHeldSeat(pas);
+                    return ReservationResult.of(ReservationResult.Status.FAILED, name);
+                }
             }
+            airplane.confirmHold(pas);
+            Seat assignedSeat = pas.getSeat();
+            notificationSink.seatReserved(assignedSeat.getRow(), assignedSeat.getCol(), pas.getName());
+            individualReservedList.put(name, pas);
+            indexForSearch(pas);
+            return new ReservationResult(ReservationResult.Status.RESERVED, name, Collections.singletonList(pas));
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Gives up a held seat before the hold expires.
+     * @param name Passanger's name.
+     * @return The result holding the passenger whose seat was freed, NOT_FOUND if the passenger holds no seat.
+     */
+    public ReservationResult releaseHold(String name) {
+        long startTime = metrics.startTimer();
+        ReservationResult result;
+        SeatHold hold = seatHolds.remove(name);
+        if (hold == null) {
+            result = ReservationResult.of(ReservationResult.Status.NOT_FOUND, name);
         } else {
-            throw new Exception();
+            cancelExpiry(hold);
+            releaseHeldSeat(hold.passenger);
+            result = new ReservationResult(ReservationResult.Status.CANCELLED, name, Collections.singletonList(hold.passenger));
+        }
+        metrics.record(ReservationMetrics.Operation.HOLD_RELEASE, startTime, result.getStatus());
+        if (hold != null) {
+            drainWaitlist();
+        }
+        return result;
+    }
+
+    /**
+     * Releases a held seat when its hold expires, on the thread of the timing wheel. Seating waiting
+     * requests on the seat writes to the journal, so it is handed to the waitlist executor and does not
+     * hold up the expiries of other flights. Bookings of a single-threaded flight run one at a time on
+     * the manager, so the expiry and the seating do too.
+     * @param name Passanger's name.
+     * @param hold the expired hold.
+     */
+    private void expireHold(String name, SeatHold hold) {
+        if (!seatHolds.remove(name, hold)) {
+            return;
+        }
+        long startTime = metrics.startTimer();
+        boolean isSingleThreaded = getBookingMode() == BookingMode.SINGLE_THREADED;
+        if (isSingleThreaded) {
+            synchronized (this) {
+                releaseHeldSeat(hold.passenger);
+            }
+        } else {
+            releaseHeldSeat(hold.passenger);
+        }
+        metrics.record(ReservationMetrics.Operation.HOLD_RELEASE, startTime);
+        if (waitlist.isEmpty()) {
+            return;
+        }
+        try {
+            getWaitlistExecutor().execute(isSingleThreaded ? () -> {
+                synchronized (this) {
+                    drainWaitlist();
+                }
+            } : this::drainWaitlist);
+        } catch (RejectedExecutionException e) {
+            // the next cancellation or released hold seats the waiting requests
+        }
+    }
+
+    /**
+     * Sets where waiting requests are seated on the seats of expired holds, e.g. the thread owning the flight.
+     * @param waitlistExecutor the executor, or null for threads shared by all flights.
+     */
+    void setWaitlistExecutor(Executor waitlistExecutor) {
+        this.waitlistExecutor = waitlistExecutor;
+    }
+
+    /**
+     * Gets where waiting requests are seated on the seats of expired holds.
+     * @return the executor.
+     */
+    private Executor getWaitlistExecutor() {
+        Executor executor = waitlistExecutor;
+        return executor != null ? executor : DefaultWaitlistExecutorHolder.INSTANCE;
+    }
+
+    /**
+     * Removes the expiry of a hold from the timing wheel.
+     * @param hold the hold.
+     */
+    private static void cancelExpiry(SeatHold hold) {
+        TimingWheel.Timeout expiry = hold.expiry;
+        if (expiry != null) {
+            expiry.cancel();
+        }
+    }
+
+    /**
+     * Frees a held seat, waiting while a checkpoint takes the changed rows.
+     * @param pas the passenger holding the seat.
+     */
+    private void releaseHeldSeat(Passenger pas) {
+        beginUpdate();
+        try {
+            freeHeldSeat(pas);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Frees a held seat and the name of its passenger.
+     * @param pas the passenger holding the seat.
+     */
+    private void freeHeldSeat(Passenger pas) {
+        airplane.removeIndividual(pas);
+        individualReservedList.remove(pas.getName(), PENDING_PASSENGER);
+    }
+
+    /**
+     * Creates a single reservation, or puts the passenger on the waitlist when no seat of the type is free.
+     * A waiting passenger is seated as soon as a cancellation or a released hold frees a seat of the type,
+     * before the passengers of lower tiers and the passengers who asked later.
+     * @param name Passanger's name.
+     * @param isEconomy True if sitting in economy.
+     * @param seatType Type of seat they want.
+     * @param tier the tier of the passenger, a higher tier is seated first.
+     * @return The result holding the reserved passenger, WAITLISTED if the passenger waits for a seat,
+     * NAME_TAKEN if the passenger already has a seat or waits for one, NAME_TOO_LONG if the name is longer
+     * than MAX_NAME_BYTES, FAILED if the reservation cannot be
+     * recorded in the journal or the seat type is unknown.
+     */
+    public ReservationResult reserveOrWaitlist(String name, boolean isEconomy, SeatType seatType, int tier) {
+        if (seatType == null) {
+            return ReservationResult.of(ReservationResult.Status.FAILED, name);
+        }
+        ReservationResult result = makeIndividualReservation(name, isEconomy, seatType);
+        if (result.getStatus() != ReservationResult.Status.NO_SEAT_AVAILABLE) {
+            return result;
+        }
+        return waitFor(Waitlist.Request.ofPassenger(name, isEconomy, seatType, tier));
+    }
+
+    /**
+     * Creates a group reservation, or puts the group on the waitlist when there are not enough free seats.
+     * A waiting group is seated once it can sit together in one row, or a row is empty for a group wider
+     * than a row, before the groups and passengers of lower tiers and those who asked later.
+     * @param names Names of passengers in the group.
+     * @param gName Name of the group.
+     * @param isEconomy True if the reservation is economy class.
+     * @param tier the tier of the group, a higher tier is seated first.
+     * @return The result holding the reserved passengers, WAITLISTED if the group waits for seats,
+     * NAME_TAKEN if the group already has seats or waits for them, NAME_TOO_LONG if a name is longer
+     * than MAX_NAME_BYTES, FAILED if the reservation cannot be
+     * recorded in the journal or the group has no passengers.
+     */
+    public ReservationResult reserveGroupOrWaitlist(String[] names, String gName, boolean isEconomy, int tier) {
+        if (names.length == 0) {
+            return ReservationResult.of(ReservationResult.Status.FAILED, gName);
+        }
+        ReservationResult result = makeGroupReservation(names, gName, isEconomy);
+        if (result.getStatus() != ReservationResult.Status.NO_SEAT_AVAILABLE) {
+            return result;
+        }
+        return waitFor(Waitlist.Request.ofGroup(gName, names, isEconomy, tier));
+    }
+
+    /**
+     * Takes a passenger or group off the waitlist.
+     * @param name Name for the person or group.
+     * @param isGroup True for group.
+     * @return CANCELLED if the request was waiting, NOT_FOUND otherwise.
+     */
+    public ReservationResult leaveWaitlist(String name, boolean isGroup) {
+        if (waitlist.remove(name, isGroup) == null) {
+            return ReservationResult.of(ReservationResult.Status.NOT_FOUND, name);
+        }
+        return ReservationResult.of(ReservationResult.Status.CANCELLED, name);
+    }
+
+    /**
+     * Gets the number of passengers and groups waiting for seats in a service class.
+     * @param isEconomy The service class.
+     * @return the number of waiting requests.
+     */
+    public int getWaitlistSize(boolean isEconomy) {
+        return waitlist.size(isEconomy);
+    }
+
+    /**
+     * Takes a name off the waitlist once it booked seats directly, so the waitlist does not give
+     * it a second reservation.
+     * @param result the result of the booking.
+     * @param isGroup True for group.
+     */
+    private void stopWaiting(ReservationResult result, boolean isGroup) {
+        if (result.getStatus() == ReservationResult.Status.RESERVED && !waitlist.isEmpty()) {
+            waitlist.remove(result.getName(), isGroup);
+        }
+    }
+
+    /**
+     * Puts a request on the waitlist. Seats freed since the reservation failed are handed out
+     * right away, so the request does not wait on a free seat.
+     * @param request the request.
+     * @return WAITLISTED, or NAME_TAKEN if a request of the name is already waiting or the name
+     * was booked since the reservation failed.
+     */
+    private ReservationResult waitFor(Waitlist.Request request) {
+        if (!waitlist.add(request)) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TAKEN, request.getName());
+        }
+        // a booking of the name that missed the request on the waitlist is seen here; a request
+        // already taken by a drain is being seated and stays WAITLISTED
+        if (isNameDuplicated(request.isGroup(), request.getName())
+                && waitlist.remove(request.getName(), request.isGroup()) != null) {
+            return ReservationResult.of(ReservationResult.Status.NAME_TAKEN, request.getName());
+        }
+        drainWaitlist();
+        return ReservationResult.of(ReservationResult.Status.WAITLISTED, request.getName());
+    }
+
+    /**
+     * Seats the waiting requests that fit the free seats. One thread drains the waitlist at a time;
+     * a drain asked for while another runs makes the running one go over the waitlist again.
+     */
+    private void drainWaitlist() {
+        if (waitlist.isEmpty()) {
+            return;
+        }
+        if (waitlistDrains.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            seatWaitingRequests(false);
+            seatWaitingRequests(true);
+            missed = waitlistDrains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Seats the waiting requests of a service class, the first to be seated first, until none fits
+     * the free seats. A request that loses its seats to a concurrent booking goes back to its place.
+     * @param isEconomy The service class.
+     */
+    private void seatWaitingRequests(boolean isEconomy) {
+        Waitlist.Request request;
+        while ((request = waitlist.takeNext(isEconomy, airplane.getFreeSeatTypes(isEconomy),
+                airplane.getLongestFreeRun(isEconomy),
+                isEconomy ? airplane.getEmptyEcoSeats() : airplane.getEmptyFirstSeats())) != null) {
+            long startTime = metrics.startTimer();
+            ReservationResult result = request.isGroup()
+                    ? reserveGroup(request.getNames(), request.getName(), isEconomy)
+                    : reserveIndividual(request.getName(), isEconomy, request.getSeatType());
+            metrics.record(ReservationMetrics.Operation.WAITLIST_PROMOTION, startTime, result.getStatus());
+            if (result.getStatus() == ReservationResult.Status.NO_SEAT_AVAILABLE
+                    || result.getStatus() == ReservationResult.Status.FAILED) {
+                waitlist.putBack(request);
+                return;
+            }
         }
-        return false;
     }
 
     /**
@@ -159,7 +899,7 @@ public class ReservationManager {
      * @return The char representation
      */
     private char convertSeatColToString(int col) {
-        return ((char) (col + CONVERT_NUM_TO_CHAR));
+        return Seat.toColumnLetter(col);
     }
 
     /**
@@ -189,22 +929,51 @@ public class ReservationManager {
      * @return  a list of all vacant seats
      */
     public String getManifestList(boolean isEconomy) {
-        if (individualReservedList.size() + groupReservedList.size() == 0) {
-            return "Manifest is Empty";
+        StringBuilder manifest = new StringBuilder();
+        try {
+            writeManifest(isEconomy, manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        ArrayList<Passenger> manifestList = airplane.getAllReservedPas(isEconomy);
+        return manifest.toString();
+    }
 
-        StringBuilder manifestInfo = addServiceClassHeader(isEconomy);
+    /**
+     * Writes the reserved passengers list seat by seat in row order, without building the
+     * whole manifest first. A Writer should be buffered.
+     * @param isEconomy   if request is for economy class or first class
+     * @param out   where the manifest is written
+     * @throws IOException  if writing fails, the manifest is then cut short
+     */
+    public void writeManifest(boolean isEconomy, Appendable out) throws IOException {
+        long startTime = metrics.startTimer();
+        try {
+            if (individualReservedList.isEmpty() && groupReservedList.isEmpty()) {
+                out.append("Manifest is Empty");
+                return;
+            }
+            out.append(isEconomy ? ECONOMY_CLASS : FIRST_CLASS).append(":\n");
+            airplane.forEachReservedPas(isEconomy, pas -> appendManifestLine(out, pas));
+            out.append('\n');
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            metrics.record(ReservationMetrics.Operation.MANIFEST, startTime);
+        }
+    }
 
-        for (Passenger pas : manifestList) {
-            Seat s = pas.getSeat();
-            String seatInfo = String.format("%d%c: %s  ", s.getRow(),
-                    convertSeatColToString(s.getCol()), pas.getName());
-            manifestInfo.append(seatInfo);
-            manifestInfo.append("\n");
+    /**
+     * Writes the manifest line of a passenger.
+     * @param out   where the line is written
+     * @param pas   the passenger
+     */
+    private void appendManifestLine(Appendable out, Passenger pas) {
+        Seat s = pas.getSeat();
+        try {
+            out.append(Integer.toString(s.getRow())).append(convertSeatColToString(s.getCol())).append(": ").append(pas.getName()).append("  \n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        manifestInfo.append("\n");
-        return manifestInfo.toString();
     }
 
     /**
@@ -213,26 +982,32 @@ public class ReservationManager {
      * @return  a list of all vacant seats
      */
     public String getAvailabilityList(boolean isEconomy) {
+        long startTime = metrics.startTimer();
+        String chart = buildAvailabilityList(isEconomy);
+        metrics.record(ReservationMetrics.Operation.AVAILABILITY_CHART, startTime);
+        return chart;
+    }
 
-        StringBuilder vacantSeatInfo = addServiceClassHeader(isEconomy);
-
-        TreeMap<Integer, ArrayList<Integer>> seatList = airplane.getAllVacantSeats(isEconomy);
-        Iterator<Integer> iter = seatList.keySet().iterator();
-
-        while (iter.hasNext()) {
-            int row = iter.next();
-            ArrayList<Integer> colList = seatList.get(row);
-            vacantSeatInfo.append(row);
-            vacantSeatInfo.append(":\t");
-            for (int k : colList) {
-                char seatCol = convertSeatColToString(k);
-                vacantSeatInfo.append(seatCol);
-                vacantSeatInfo.append("\t");
-            }
-            vacantSeatInfo.append("\n");
+    /**
+     * Formats the vacant seats list. The chart is kept until a seat of the service class changes,
+     * and then only the lines of the rows that changed are rendered again.
+     * @param isEconomy   if request is for economy class or first class
+     * @return  the availability chart
+     */
+    private String buildAvailabilityList(boolean isEconomy) {
+        int cabin = isEconomy ? 1 : 0;
+        long version = airplane.getVersion(isEconomy);
+        AvailabilityChart chart = availabilityCharts[cabin];
+        if (chart != null && chart.version == version) {
+            return chart.text;
         }
+
+        StringBuilder vacantSeatInfo = addServiceClassHeader(isEconomy);
+        airplane.appendAvailabilityLines(isEconomy, vacantSeatInfo);
         vacantSeatInfo.append("\n");
-        return vacantSeatInfo.toString();
+        chart = new AvailabilityChart(version, vacantSeatInfo.toString());
+        availabilityCharts[cabin] = chart;
+        return chart.text;
     }
 
     /**
@@ -265,25 +1040,119 @@ public class ReservationManager {
     }
 
     /**
-     * Saves all the reservations to a file to retrieve later.
+     * Saves all the reservations to a comma-separated file to retrieve later or to export them.
      * @param file File to save to.
+     * @return True if all reservations are saved.
      */
-    public void saveInfoToFile(File file) {
+    public boolean saveInfoToFile(File file) {
         PrintWriter printFile = null;
         try {
             printFile = new PrintWriter(file);
         } catch (FileNotFoundException e) {
             e.getStackTrace();
-            return;
+            return false;
         }
+        PrintWriter pasFile = printFile;
+        airplane.forEachReservedPas(false, pas -> pasFile.println(getReservedPassInfo(pas)));
+        airplane.forEachReservedPas(true, pas -> pasFile.println(getReservedPassInfo(pas)));
+        printFile.close();
+        return !printFile.checkError();
+    }
+
+    /**
+     * Saves all the reservations to a binary snapshot file to retrieve later.
+     * @param file File to save to.
+     * @return True if all reservations are saved.
+     */
+    public boolean saveSnapshot(File file) {
+        long startTime = metrics.startTimer();
         ArrayList<Passenger> reservedPas = airplane.getAllReservedPas(false);
         reservedPas.addAll(airplane.getAllReservedPas(true));
+        try {
+            ReservationSnapshot.write(file, reservedPas);
+        } catch (IOException e) {
+            metrics.record(ReservationMetrics.Operation.SNAPSHOT_SAVE, startTime, ReservationResult.Status.FAILED);
+            return false;
+        }
+        metrics.record(ReservationMetrics.Operation.SNAPSHOT_SAVE, startTime);
+        return true;
+    }
 
-        for (Passenger k : reservedPas) {
-            String info = getReservedPassInfo(k);
-            printFile.println(info);
+    /**
+     * Restores the reservations from a binary snapshot file.
+     * @param file  a snapshot file written by saveSnapshot
+     * @throws IOException if the file cannot be read, is not a valid snapshot or holds a name longer than MAX_NAME_BYTES
+     */
+    public void restoreSnapshot(File file) throws IOException {
+        HashMap<String, ArrayList<Passenger>> pasGroupList = new HashMap<>();
+        ArrayList<Passenger> individualList = new ArrayList<Passenger>();
+        try {
+            ReservationSnapshot.read(file, (pas, seatRow, seatCol) ->
+                    restorePassenger(pas, seatRow, seatCol, pasGroupList, individualList));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        printFile.close();
+        updateTrackingList(pasGroupList, individualList);
+    }
+
+    /**
+     * Restores the reservations from the last checkpoint of a page file. The restored rows
+     * are not marked as changed, since the page file already holds them.
+     * @param pageFile  a page file written by a Checkpointer
+     * @throws IOException if a page cannot be read or holds a name longer than MAX_NAME_BYTES
+     */
+    void restorePages(RowPageFile pageFile) throws IOException {
+        HashMap<String, ArrayList<Passenger>> pasGroupList = new HashMap<>();
+        ArrayList<Passenger> individualList = new ArrayList<Passenger>();
+        try {
+            pageFile.read((pas, seatRow, seatCol) ->
+                    restorePassenger(pas, seatRow, seatCol, pasGroupList, individualList));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        updateTrackingList(pasGroupList, individualList);
+        airplane.takeDirtyRows();
+    }
+
+    /**
+     * Seats a restored passenger and collects it by group.
+     * @param pas the passenger
+     * @param seatRow   the row of seat
+     * @param seatCol   the column of seat
+     * @param pasGroupList The list of group reservations.
+     * @param individualList The list of individual reservations.
+     * @throws UncheckedIOException if a name of the passenger is longer than MAX_NAME_BYTES
+     */
+    private void restorePassenger(Passenger pas, int seatRow, int seatCol,
+                                  HashMap<String, ArrayList<Passenger>> pasGroupList, ArrayList<Passenger> individualList) {
+        if (pas.isGrouped()) {
+            checkRestoredNames(pas.getName(), pas.getGroupName());
+            pasGroupList.computeIfAbsent(pas.getGroupName(), k -> new ArrayList<Passenger>()).add(pas);
+        } else {
+            checkRestoredNames(pas.getName());
+            individualList.add(pas);
+        }
+        addPasDirectlyToSeat(pas, seatRow, seatCol);
+    }
+
+    /**
+     * Restores the reservations from either a binary snapshot or a comma-separated file
+     * written by saveInfoToFile.
+     * @param file  a file that stores the information
+     * @throws IOException if the file cannot be read or holds a name longer than MAX_NAME_BYTES
+     */
+    public void restore(File file) throws IOException {
+        long startTime = metrics.startTimer();
+        if (ReservationSnapshot.isSnapshot(file)) {
+            restoreSnapshot(file);
+        } else {
+            try {
+                restoreInfoFromFile(file);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        metrics.record(ReservationMetrics.Operation.RESTORE, startTime);
     }
 
     /**
@@ -293,13 +1162,13 @@ public class ReservationManager {
      * @param seatCol   the column of seat
      */
     private void addPasDirectlyToSeat(Passenger pas, int seatRow, int seatCol) {
-        airplane.getSeatRow(seatRow).addToSeat(pas, seatCol);
-        airplane.changeTotalVacantSeats(-1,pas.isEconomy());
+        airplane.addPasToSeat(pas, seatRow, seatCol);
     }
 
     /**
-     * Restores the reservation made from the previous run
+     * Restores the reservation made from the previous run from a comma-separated file
      * @param file  a text file that stores the information
+     * @throws UncheckedIOException if the file holds a name longer than MAX_NAME_BYTES
      */
     public void restoreInfoFromFile(File file) {
         Scanner scanner = null;
@@ -329,6 +1198,7 @@ public class ReservationManager {
             isGrouped = Boolean.valueOf(info[4]);
             if (isGrouped) {
                 groupName = info[5];
+                checkRestoredNames(name, groupName);
                 pas = new Passenger(name, isEconomy, isGrouped, groupName);
                 if (!pasGroupList.containsKey(groupName)) {
                     pasGroupList.put(groupName, new ArrayList<Passenger>());
@@ -336,6 +1206,7 @@ public class ReservationManager {
                 pasGroupList.get(groupName).add(pas);
             } else {
                 seatPref = info[5];
+                checkRestoredNames(name);
                 pas = new Passenger(name, isEconomy, seatPref);
                 individualList.add(pas);
             }
@@ -346,6 +1217,118 @@ public class ReservationManager {
         scanner.close();
     }
 
+    /**
+     * Applies an individual reservation from the journal unless the passenger is already
+     * reserved or the seat is taken.
+     * @param name Passenger's name.
+     * @param isEconomy True if sitting in economy.
+     * @param seatPref Type of seat they want.
+     * @param seatRow The seat row.
+     * @param seatCol The seat column.
+     * @return True if the reservation is applied.
+     * @throws IOException if the name is longer than MAX_NAME_BYTES.
+     */
+    boolean replayIndividualReservation(String name, boolean isEconomy, String seatPref, int seatRow, int seatCol)
+            throws IOException {
+        checkRestoredName(name);
+        if (individualReservedList.containsKey(name) || !airplane.isSeatVacant(seatRow, seatCol)) {
+            return false;
+        }
+        Passenger pas = new Passenger(name, isEconomy, seatPref);
+        addPasDirectlyToSeat(pas, seatRow, seatCol);
+        individualReservedList.put(name, pas);
+        indexForSearch(pas);
+        return true;
+    }
+
+    /**
+     * Applies a group reservation from the journal unless the group is already
+     * reserved or one of its seats is taken.
+     * @param gName Name of the group.
+     * @param isEconomy True if the reservation is economy class.
+     * @param names Names of passengers in the group.
+     * @param seatRows The seat row of every passenger.
+     * @param seatCols The seat column of every passenger.
+     * @return True if the reservation is applied.
+     * @throws IOException if a name is longer than MAX_NAME_BYTES.
+     */
+    boolean replayGroupReservation(String gName, boolean isEconomy, String[] names, int[] seatRows, int[] seatCols)
+            throws IOException {
+        checkRestoredName(gName);
+        for (String name : names) {
+            checkRestoredName(name);
+        }
+        if (groupReservedList.containsKey(gName)) {
+            return false;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (!airplane.isSeatVacant(seatRows[i], seatCols[i])) {
+                return false;
+            }
+        }
+        ArrayList<Passenger> group = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            Passenger pas = new Passenger(names[i], isEconomy, true, gName);
+            addPasDirectlyToSeat(pas, seatRows[i], seatCols[i]);
+            group.add(pas);
+        }
+        GroupOfPassenger reservedGroup = new GroupOfPassenger(group, gName, isEconomy);
+        groupReservedList.put(gName, reservedGroup);
+        indexForSearch(reservedGroup);
+        return true;
+    }
+
+    /**
+     * Applies a cancellation from the journal if the name is reserved.
+     * @param name Name for the person or group.
+     * @param isGroup True for group.
+     * @return True if the cancellation is applied.
+     */
+    boolean replayCancellation(String name, boolean isGroup) {
+        if (isGroup) {
+            GroupOfPassenger group = groupReservedList.remove(name);
+            if (group != null && airplane.removeGroup(group)) {
+                unindexForSearch(group);
+                return true;
+            }
+            return false;
+        }
+        Passenger pas = individualReservedList.remove(name);
+        if (pas != null && airplane.removeIndividual(pas)) {
+            unindexForSearch(pas);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks that a restored name is not longer than a booking allows, since a row holding it
+     * could not be written to a page of the page file.
+     * @param name name of passenger or group
+     * @throws IOException if the name is longer than MAX_NAME_BYTES
+     */
+    private static void checkRestoredName(String name) throws IOException {
+        if (isNameTooLong(name)) {
+            throw new IOException("The name " + name.substring(0, MAX_NAME_BYTES / 4) + "... is longer than "
+                    + MAX_NAME_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * Checks restored names where an IOException cannot be thrown.
+     * @param names names of passenger or group
+     * @throws UncheckedIOException if a name is longer than MAX_NAME_BYTES
+     */
+    private static void checkRestoredNames(String... names) {
+        try {
+            for (String name : names) {
+                checkRestoredName(name);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Updates the passenger tracking list with the given info.
      * @param pasGroupList The list of group reservations.
@@ -356,11 +1339,117 @@ public class ReservationManager {
         while (iter.hasNext()) {
             String gName = iter.next();
             ArrayList<Passenger> group = pasGroupList.get(gName);
-            groupReservedList.put(gName, new GroupOfPassenger(group, gName, group.get(1).isEconomy()));
+            GroupOfPassenger reservedGroup = new GroupOfPassenger(group, gName, group.get(0).isEconomy());
+            groupReservedList.put(gName, reservedGroup);
+            indexForSearch(reservedGroup);
         }
 
         for (Passenger k : individualList) {
             individualReservedList.put(k.getName(), k);
+            indexForSearch(k);
+        }
+    }
+
+    /**
+     * Finds the reserved passengers by the start of their first or last name or of their whole name.
+     * @param prefix The start of the name, case does not matter.
+     * @param limit The most passengers to return.
+     * @return The passengers found, with their seats and groups.
+     */
+    public List<Passenger> searchByPrefix(String prefix, int limit) {
+        long startTime = metrics.startTimer();
+        List<Passenger> found = getSearchIndex().searchPrefix(prefix, limit, this::isListed);
+        metrics.record(ReservationMetrics.Operation.PASSENGER_SEARCH, startTime);
+        return found;
+    }
+
+    /**
+     * Finds the reserved passengers whose first or last name or whole name is spelled close to a query,
+     * allowing one wrong, missing or extra letter, or two for queries longer than four letters.
+     * @param query The name as typed, case does not matter.
+     * @param limit The most passengers to return.
+     * @return The passengers found, the closest spellings first.
+     */
+    public List<Passenger> searchBySpelling(String query, int limit) {
+        long startTime = metrics.startTimer();
+        List<Passenger> found = getSearchIndex().searchFuzzy(query, limit, this::isListed);
+        metrics.record(ReservationMetrics.Operation.PASSENGER_SEARCH, startTime);
+        return found;
+    }
+
+    /**
+     * Gets the search index, building it from the seated passengers on the first search.
+     * Bookings update the index only once it exists, so flights nobody searches pay nothing for it.
+     * @return The search index.
+     */
+    private PassengerSearchIndex getSearchIndex() {
+        if (!isSearchIndexBuilt) {
+            synchronized (this) {
+                if (!isSearchIndexBuilt) {
+                    PassengerSearchIndex index = new PassengerSearchIndex();
+                    searchIndex = index;
+                    airplane.forEachReservedPas(false, index::add);
+                    airplane.forEachReservedPas(true, index::add);
+                    isSearchIndexBuilt = true;
+                }
+            }
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Checks if a passenger found by a search is still reserved. A passenger cancelled while the
+     * index was built may still be in it.
+     * @param pas The passenger.
+     * @return True if the passenger has a reservation.
+     */
+    private boolean isListed(Passenger pas) {
+        if (pas.isGrouped()) {
+            GroupOfPassenger group = groupReservedList.get(pas.getGroupName());
+            return group != null && group.getPassengerGroup().contains(pas);
+        }
+        return individualReservedList.get(pas.getName()) == pas;
+    }
+
+    /**
+     * Adds a reserved passenger to the search index if there is one.
+     * @param pas The passenger.
+     */
+    private void indexForSearch(Passenger pas) {
+        PassengerSearchIndex index = searchIndex;
+        if (index != null) {
+            index.add(pas);
+        }
+    }
+
+    /**
+     * Adds the passengers of a reserved group to the search index if there is one.
+     * @param group The group.
+     */
+    private void indexForSearch(GroupOfPassenger group) {
+        for (Passenger k : group.getPassengerGroup()) {
+            indexForSearch(k);
+        }
+    }
+
+    /**
+     * Removes a cancelled passenger from the search index if there is one.
+     * @param pas The passenger.
+     */
+    private void unindexForSearch(Passenger pas) {
+        PassengerSearchIndex index = searchIndex;
+        if (index != null) {
+            index.remove(pas);
+        }
+    }
+
+    /**
+     * Removes the passengers of a cancelled group from the search index if there is one.
+     * @param group The group.
+     */
+    private void unindexForSearch(GroupOfPassenger group) {
+        for (Passenger k : group.getPassengerGroup()) {
+            unindexForSearch(k);
         }
     }
 
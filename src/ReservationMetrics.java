@@ -0,0 +1,62 @@
+/**
+ * Receives the timings of the operations of a ReservationManager and the outcomes of its bookings.
+ * The manager asks for a start time before an operation and hands it back when the operation is
+ * done, so a disabled recorder does not even read the clock.
+ */
+public interface ReservationMetrics {
+
+    /**
+     * The operations that are timed.
+     */
+    enum Operation {
+        INDIVIDUAL_RESERVATION,
+        GROUP_RESERVATION,
+        CANCELLATION,
+        SEAT_SEARCH,
+        GROUP_PLACEMENT,
+        AVAILABILITY_CHART,
+        MANIFEST,
+        JOURNAL_WRITE,
+        SNAPSHOT_SAVE,
+        RESTORE,
+        CHECKPOINT,
+        PASSENGER_SEARCH,
+        SEAT_HOLD,
+        HOLD_CONFIRMATION,
+        HOLD_RELEASE,
+        WAITLIST_PROMOTION
+    }
+
+    /**
+     * Gets the start time of an operation.
+     *
+     * @return the time in nanoseconds, or 0 if nothing is recorded
+     */
+    long startTimer();
+
+    /**
+     * Records that an operation is done.
+     *
+     * @param operation the operation
+     * @param startTime the time from startTimer
+     */
+    void record(Operation operation, long startTime);
+
+    /**
+     * Records that a booking operation is done and its outcome.
+     *
+     * @param operation the operation
+     * @param startTime the time from startTimer
+     * @param status    the outcome
+     */
+    void record(Operation operation, long startTime, ReservationResult.Status status);
+
+    /**
+     * Formats the recorded metrics as plain text.
+     *
+     * @return the text
+     */
+    default String dump() {
+        return "No metrics are recorded.\n";
+    }
+}
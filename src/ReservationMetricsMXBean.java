@@ -0,0 +1,61 @@
+import java.util.Map;
+
+/**
+ * The JMX view of the recorded reservation metrics.
+ */
+public interface ReservationMetricsMXBean {
+
+    /**
+     * Gets the number of times every operation ran.
+     *
+     * @return the counts by operation
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * Gets the median latency of every operation.
+     *
+     * @return the latencies in microseconds by operation
+     */
+    Map<String, Double> getP50Micros();
+
+    /**
+     * Gets the 99th percentile latency of every operation.
+     *
+     * @return the latencies in microseconds by operation
+     */
+    Map<String, Double> getP99Micros();
+
+    /**
+     * Gets the highest latency of every operation.
+     *
+     * @return the latencies in microseconds by operation
+     */
+    Map<String, Double> getMaxMicros();
+
+    /**
+     * Gets the number of bookings by outcome.
+     *
+     * @return the counts by outcome
+     */
+    Map<String, Long> getOutcomeCounts();
+
+    /**
+     * Gets the current values of the gauges, e.g. how full the cabins are.
+     *
+     * @return the values by gauge name
+     */
+    Map<String, Double> getGauges();
+
+    /**
+     * Formats all metrics as plain text.
+     *
+     * @return the text
+     */
+    String dump();
+
+    /**
+     * Forgets the recorded latencies and counts.
+     */
+    void reset();
+}
@@ -0,0 +1,88 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One object of ReservationResult tells the outcome of a reservation request
+ * and the seats assigned to its passengers.
+ */
+public class ReservationResult {
+
+    /**
+     * The outcome of a reservation request.
+     */
+    public enum Status {
+        RESERVED,
+        HELD,
+        WAITLISTED,
+        NO_SEAT_AVAILABLE,
+        CANCELLED,
+        NOT_FOUND,
+        NAME_TAKEN,
+        NAME_TOO_LONG,
+        FAILED
+    }
+
+    private final Status status;
+    private final String name;
+    private final List<Passenger> passengers;
+
+    /**
+     * Constructor of the class
+     *
+     * @param status     the outcome of the request
+     * @param name       name of the passenger or group of the request
+     * @param passengers the passengers whose seats were reserved or cancelled
+     */
+    public ReservationResult(Status status, String name, List<Passenger> passengers) {
+        this.status = status;
+        this.name = name;
+        this.passengers = passengers;
+    }
+
+    /**
+     * Creates the result of a request that did not change any seat.
+     *
+     * @param status the outcome of the request
+     * @param name   name of the passenger or group of the request
+     * @return the result
+     */
+    public static ReservationResult of(Status status, String name) {
+        return new ReservationResult(status, name, Collections.emptyList());
+    }
+
+    /**
+     * Accessor of the outcome.
+     *
+     * @return the outcome of the request
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Checks if the request did what it asked for.
+     *
+     * @return true if the seats were reserved, held or cancelled
+     */
+    public boolean isSuccessful() {
+        return status == Status.RESERVED || status == Status.HELD || status == Status.CANCELLED;
+    }
+
+    /**
+     * Accessor of the name of the request.
+     *
+     * @return name of the passenger or group
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the passengers whose seats were reserved or cancelled, each holding its seat.
+     *
+     * @return the passengers, empty if the request failed
+     */
+    public List<Passenger> getPassengers() {
+        return passengers;
+    }
+}
@@ -0,0 +1,614 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import javax.management.JMException;
+
+/**
+ * An embedded HTTP server booking seats on the flights of a FlightInventory and answering in JSON.
+ * <p>
+ * Every flight has these resources, with parameters in the query string or a form body:
+ * <pre>
+ * POST /flights/{id}/passengers    name, class (F or E), pref (W, C or A)  reserve a seat
+ * POST /flights/{id}/groups        name, class (F or E), names (a,b,...)   reserve seats for a group
+ * POST /flights/{id}/cancellations name, group (true or false)            cancel a reservation or stop waiting
+ * POST /flights/{id}/waitlist      name, class, pref or names, tier        reserve, or wait for a seat if full
+ * POST /flights/{id}/holds         name, class (F or E), pref, ttl (ms)    hold a seat until confirmed
+ * POST /flights/{id}/confirmations name                                    reserve the held seat
+ * POST /flights/{id}/releases      name                                    give up the held seat
+ * GET  /flights/{id}/availability  class (F or E)                          the seating availability chart
+ * GET  /flights/{id}/manifest      class (F or E)                          the manifest
+ * GET  /flights/{id}/search        q, fuzzy (true or false), limit         passengers by name prefix or spelling
+ * </pre>
+ * When metrics are set, GET /metrics answers with the metrics as plain text.
+ * Every request runs on its own virtual thread when the JDK has them, otherwise on a cached thread pool.
+ */
+public class ReservationServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final String FLIGHTS_PATH = "/flights/";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String PASSENGERS = "passengers";
+    private static final String GROUPS = "groups";
+    private static final String CANCELLATIONS = "cancellations";
+    private static final String HOLDS = "holds";
+    private static final String CONFIRMATIONS = "confirmations";
+    private static final String RELEASES = "releases";
+    private static final String WAITLIST = "waitlist";
+    private static final String AVAILABILITY = "availability";
+    private static final String MANIFEST = "manifest";
+    private static final String SEARCH = "search";
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 1000;
+    private static final long DEFAULT_HOLD_MILLIS = 10 * 60 * 1000;
+    private static final String GET = "GET";
+    private static final String POST = "POST";
+    private static final String ECONOMY_CLASS = "E";
+    private static final String FIRST_CLASS = "F";
+    private static final int OK = 200;
+    private static final int ACCEPTED = 202;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int CONFLICT = 409;
+    private static final int SERVER_ERROR = 500;
+
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final FlightInventory inventory;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean isVirtual;
+
+    /**
+     * Thrown when a request cannot be served, carrying the HTTP status to answer with.
+     */
+    private static class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int httpStatus;
+
+        /**
+         * Constructor of the class
+         *
+         * @param httpStatus the HTTP status
+         * @param message    what is wrong with the request
+         */
+        private RequestException(int httpStatus, String message) {
+            super(message);
+            this.httpStatus = httpStatus;
+        }
+    }
+
+    /**
+     * Constructor of the class. The server does not take requests until start is called.
+     *
+     * @param inventory the flights to book
+     * @param port      the port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public ReservationServer(FlightInventory inventory, int port) throws IOException {
+        this.inventory = inventory;
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        isVirtual = (virtualExecutor != null);
+        executor = isVirtual ? virtualExecutor : Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "reservation-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(FLIGHTS_PATH, this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task. Looked up by reflection so the
+     * server also runs on JDKs without virtual threads.
+     *
+     * @return the executor, or null if the JDK has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Serves the metrics of the flights as plain text to GET requests. Must be called before start.
+     *
+     * @param metrics the metrics recorder the flights share
+     */
+    public void setMetrics(ReservationMetrics metrics) {
+        server.createContext(METRICS_PATH, exchange -> {
+            if (!GET.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", GET);
+                exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = metrics.dump().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(OK, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    /**
+     * Starts taking requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops taking requests and waits a while for the running ones.
+     *
+     * @param delaySeconds the longest time to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Accessor of the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Checks if requests run on virtual threads.
+     *
+     * @return true for virtual threads, false for a thread pool
+     */
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+
+    /**
+     * Serves one request and sends the JSON answer.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the answer cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int httpStatus;
+        String body;
+        try {
+            String[] path = exchange.getRequestURI().getPath().substring(FLIGHTS_PATH.length()).split("/");
+            if (path.length != 2) {
+                throw new RequestException(NOT_FOUND, "Unknown resource");
+            }
+            HashMap<String, String> params;
+            try {
+                params = readParams(exchange);
+            } catch (IOException e) {
+                throw new RequestException(BAD_REQUEST, "Cannot read the request: " + e.getMessage());
+            }
+            StringBuilder json = new StringBuilder();
+            httpStatus = route(exchange.getRequestMethod(), path[0], path[1], params, json);
+            body = json.toString();
+        } catch (RequestException e) {
+            httpStatus = e.httpStatus;
+            body = "{\"error\":" + quote(e.getMessage()) + "}";
+        } catch (RuntimeException e) {
+            httpStatus = SERVER_ERROR;
+            body = "{\"error\":" + quote(String.valueOf(e.getMessage())) + "}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(httpStatus, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Runs the operation a request asks for on its flight.
+     *
+     * @param method   the HTTP method
+     * @param flightId the flight id
+     * @param resource the resource of the flight
+     * @param params   the parameters of the request
+     * @param json     receives the JSON answer
+     * @return the HTTP status
+     * @throws RequestException if the request is not valid
+     */
+    private int route(String method, String flightId, String resource, HashMap<String, String> params,
+                      StringBuilder json) throws RequestException {
+        switch (resource) {
+            case PASSENGERS:
+                checkMethod(method, POST);
+                String name = getParam(params, "name");
+                boolean isEconomy = getServiceClass(params);
+                SeatType seatType = SeatType.fromCode(getParam(params, "pref"));
+                if (seatType == null) {
+                    throw new RequestException(BAD_REQUEST, "pref must be W, C or A");
+                }
+                return execute(flightId, manager -> manager.makeIndividualReservation(name, isEconomy, seatType), json);
+            case GROUPS:
+                checkMethod(method, POST);
+                String gName = getParam(params, "name");
+                boolean isGroupEconomy = getServiceClass(params);
+                String[] names = getParam(params, "names").split(",");
+                return execute(flightId, manager -> manager.makeGroupReservation(names, gName, isGroupEconomy), json);
+            case CANCELLATIONS:
+                checkMethod(method, POST);
+                String cName = getParam(params, "name");
+                boolean isGroup = Boolean.parseBoolean(params.get("group"));
+                return execute(flightId, manager -> manager.cancel(cName, isGroup), json);
+            case HOLDS:
+                checkMethod(method, POST);
+                String hName = getParam(params, "name");
+                boolean isHoldEconomy = getServiceClass(params);
+                SeatType holdType = SeatType.fromCode(getParam(params, "pref"));
+                if (holdType == null) {
+                    throw new RequestException(BAD_REQUEST, "pref must be W, C or A");
+                }
+                long ttl = getHoldMillis(params);
+                return execute(flightId, manager -> manager.holdSeat(hName, isHoldEconomy, holdType, ttl), json);
+            case CONFIRMATIONS:
+                checkMethod(method, POST);
+                String confirmName = getParam(params, "name");
+                return execute(flightId, manager -> manager.confirmHold(confirmName), json);
+            case RELEASES:
+                checkMethod(method, POST);
+                String releaseName = getParam(params, "name");
+                return execute(flightId, manager -> manager.releaseHold(releaseName), json);
+            case WAITLIST:
+                checkMethod(method, POST);
+                String wName = getParam(params, "name");
+                boolean isWaitEconomy = getServiceClass(params);
+                int tier = getTier(params);
+                if (params.containsKey("names")) {
+                    String[] waitNames = getParam(params, "names").split(",");
+                    return execute(flightId, manager -> manager.reserveGroupOrWaitlist(waitNames, wName, isWaitEconomy, tier), json);
+                }
+                SeatType waitType = SeatType.fromCode(getParam(params, "pref"));
+                if (waitType == null) {
+                    throw new RequestException(BAD_REQUEST, "pref must be W, C or A");
+                }
+                return execute(flightId, manager -> manager.reserveOrWaitlist(wName, isWaitEconomy, waitType, tier), json);
+            case AVAILABILITY:
+            case MANIFEST:
+                checkMethod(method, GET);
+                boolean isChartEconomy = getServiceClass(params);
+                String chart = inventory.execute(checkFlightId(flightId), manager -> resource.equals(MANIFEST)
+                        ? manager.getManifestList(isChartEconomy) : manager.getAvailabilityList(isChartEconomy));
+                json.append("{\"flight\":").append(quote(flightId)).append(",\"lines\":[");
+                String[] lines = chart.split("\n");
+                for (int i = 0; i < lines.length; i++) {
+                    json.append(i > 0 ? "," : "").append(quote(lines[i]));
+                }
+                json.append("]}");
+                return OK;
+            case SEARCH:
+                checkMethod(method, GET);
+                String query = getParam(params, "q");
+                boolean isFuzzy = Boolean.parseBoolean(params.get("fuzzy"));
+                int limit = getLimit(params);
+                List<Passenger> found = inventory.execute(checkFlightId(flightId), manager -> isFuzzy
+                        ? manager.searchBySpelling(query, limit) : manager.searchByPrefix(query, limit));
+                json.append("{\"flight\":").append(quote(flightId)).append(",\"passengers\":[");
+                for (int i = 0; i < found.size(); i++) {
+                    Passenger pas = found.get(i);
+                    Seat seat = pas.getSeat();
+                    json.append(i > 0 ? "," : "").append("{\"name\":").append(quote(pas.getName()))
+                            .append(",\"seat\":\"").append(seat.getRow()).append(Seat.toColumnLetter(seat.getCol()))
+                            .append("\"");
+                    if (pas.isGrouped()) {
+                        json.append(",\"group\":").append(quote(pas.getGroupName()));
+                    }
+                    json.append("}");
+                }
+                json.append("]}");
+                return OK;
+            default:
+                throw new RequestException(NOT_FOUND, "Unknown resource " + resource);
+        }
+    }
+
+    /**
+     * Runs a reservation or cancellation on a flight and writes its result.
+     *
+     * @param flightId  the flight id
+     * @param operation the operation
+     * @param json      receives the JSON answer
+     * @return the HTTP status
+     * @throws RequestException if the flight id is not valid
+     */
+    private int execute(String flightId, Function<ReservationManager, ReservationResult> operation,
+                        StringBuilder json) throws RequestException {
+        ReservationResult result = inventory.execute(checkFlightId(flightId), operation);
+        appendResult(result, json);
+        switch (result.getStatus()) {
+            case RESERVED:
+            case HELD:
+            case CANCELLED:
+                return OK;
+            case WAITLISTED:
+                return ACCEPTED;
+            case NOT_FOUND:
+                return NOT_FOUND;
+            case NAME_TOO_LONG:
+                return BAD_REQUEST;
+            case NO_SEAT_AVAILABLE:
+            case NAME_TAKEN:
+                return CONFLICT;
+            default:
+                return SERVER_ERROR;
+        }
+    }
+
+    /**
+     * Writes the result of a reservation or cancellation as JSON.
+     *
+     * @param result the result
+     * @param json   receives the JSON
+     */
+    private static void appendResult(ReservationResult result, StringBuilder json) {
+        json.append("{\"status\":\"").append(result.getStatus()).append("\",\"name\":").append(quote(result.getName()));
+        List<Passenger> passengers = result.getPassengers();
+        if (!passengers.isEmpty()) {
+            json.append(",\"seats\":[");
+            for (int i = 0; i < passengers.size(); i++) {
+                Passenger pas = passengers.get(i);
+                Seat seat = pas.getSeat();
+                json.append(i > 0 ? "," : "").append("{\"name\":").append(quote(pas.getName()))
+                        .append(",\"seat\":\"").append(seat.getRow()).append(Seat.toColumnLetter(seat.getCol()))
+                        .append("\"}");
+            }
+            json.append("]");
+        }
+        json.append("}");
+    }
+
+    /**
+     * Reads the parameters of the query string and of a form body.
+     *
+     * @param exchange the request
+     * @return the parameters by name
+     * @throws IOException if the body cannot be read
+     */
+    private static HashMap<String, String> readParams(HttpExchange exchange) throws IOException {
+        HashMap<String, String> params = new HashMap<>();
+        addParams(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            if (body.length > 0) {
+                addParams(new String(body, StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Adds the parameters of a url-encoded string.
+     *
+     * @param encoded the url-encoded parameters, may be null
+     * @param params  receives the parameters
+     */
+    private static void addParams(String encoded, HashMap<String, String> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int split = pair.indexOf('=');
+            if (split > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, split), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Gets a parameter that must be given.
+     *
+     * @param params the parameters
+     * @param name   the name of the parameter
+     * @return the value
+     * @throws RequestException if the parameter is missing or empty
+     */
+    private static String getParam(HashMap<String, String> params, String name) throws RequestException {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new RequestException(BAD_REQUEST, "Missing parameter " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the limit parameter of a search. Limits above MAX_SEARCH_LIMIT are lowered to it,
+     * so one request cannot ask for every passenger of a flight.
+     *
+     * @param params the parameters
+     * @return the most results to return
+     * @throws RequestException if the limit is not a positive number
+     */
+    private static int getLimit(HashMap<String, String> params) throws RequestException {
+        String limit = params.get("limit");
+        if (limit == null) {
+            return DEFAULT_SEARCH_LIMIT;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            // digits too many for an int are a limit above the cap, anything else is no number
+            value = limit.matches("[0-9]+") ? MAX_SEARCH_LIMIT : 0;
+        }
+        if (value <= 0) {
+            throw new RequestException(BAD_REQUEST, "limit must be a positive number");
+        }
+        return Math.min(value, MAX_SEARCH_LIMIT);
+    }
+
+    /**
+     * Gets the ttl parameter of a hold.
+     *
+     * @param params the parameters
+     * @return how long the seat is held in milliseconds
+     * @throws RequestException if the ttl is not a positive number
+     */
+    private static long getHoldMillis(HashMap<String, String> params) throws RequestException {
+        String ttl = params.get("ttl");
+        if (ttl == null) {
+            return DEFAULT_HOLD_MILLIS;
+        }
+        long value;
+        try {
+            value = Long.parseLong(ttl);
+        } catch (NumberFormatException e) {
+            value = 0;
+        }
+        if (value <= 0) {
+            throw new RequestException(BAD_REQUEST, "ttl must be a positive number");
+        }
+        return value;
+    }
+
+    /**
+     * Gets the tier parameter of a waitlisted request.
+     *
+     * @param params the parameters
+     * @return the tier, a higher tier is seated first
+     * @throws RequestException if the tier is not a number
+     */
+    private static int getTier(HashMap<String, String> params) throws RequestException {
+        String tier = params.get("tier");
+        if (tier == null) {
+            return Waitlist.DEFAULT_TIER;
+        }
+        try {
+            return Integer.parseInt(tier);
+        } catch (NumberFormatException e) {
+            throw new RequestException(BAD_REQUEST, "tier must be a number");
+        }
+    }
+
+    /**
+     * Gets the service class parameter.
+     *
+     * @param params the parameters
+     * @return true for economy
+     * @throws RequestException if the class is not F or E
+     */
+    private static boolean getServiceClass(HashMap<String, String> params) throws RequestException {
+        String serviceClass = getParam(params, "class");
+        if (!serviceClass.equals(ECONOMY_CLASS) && !serviceClass.equals(FIRST_CLASS)) {
+            throw new RequestException(BAD_REQUEST, "class must be F or E");
+        }
+        return serviceClass.equals(ECONOMY_CLASS);
+    }
+
+    /**
+     * Checks the method of a request.
+     *
+     * @param method   the method of the request
+     * @param expected the method of the resource
+     * @throws RequestException if they differ
+     */
+    private static void checkMethod(String method, String expected) throws RequestException {
+        if (!method.equals(expected)) {
+            throw new RequestException(METHOD_NOT_ALLOWED, "Use " + expected);
+        }
+    }
+
+    /**
+     * Checks a flight id before the flight is loaded.
+     *
+     * @param flightId the flight id
+     * @return the flight id
+     * @throws RequestException if the flight id is not valid
+     */
+    private static String checkFlightId(String flightId) throws RequestException {
+        if (!FlightInventory.isValidFlightId(flightId)) {
+            throw new RequestException(BAD_REQUEST, "Invalid flight id " + flightId);
+        }
+        return flightId;
+    }
+
+    /**
+     * Quotes a string as a JSON string.
+     *
+     * @param value the string
+     * @return the JSON string
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Runs the server until the process is stopped, saving all loaded flights on the way out.
+     * Usage: java ReservationServer [port] [data directory] [layout file]
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        // Without TCP_NODELAY a small answer waits for the delayed ACK of the client, about 40 ms per request.
+        // The server reads the property once, so it is set before the first server is created.
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        File dataDir = new File((args.length > 1) ? args[1] : "flights");
+        AircraftLayout layout = AircraftLayout.DEFAULT;
+        if (args.length > 2) {
+            try {
+                layout = AircraftLayout.load(new File(args[2]));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Cannot load the airplane layout: " + e.getMessage());
+                return;
+            }
+        }
+        AircraftLayout flightLayout = layout;
+        FlightInventory inventory = new FlightInventory(dataDir, flightId -> flightLayout, BookingMode.LOCK_FREE,
+                FlightInventory.DEFAULT_NUM_OF_PARTITIONS, FlightInventory.DEFAULT_FLIGHTS_PER_PARTITION, true);
+        HistogramReservationMetrics metrics = new HistogramReservationMetrics();
+        metrics.addGauge("loaded_flights", () -> inventory.getLoadedFlights().size());
+        inventory.setMetrics(metrics);
+        ReservationServer reservationServer;
+        try {
+            reservationServer = new ReservationServer(inventory, port);
+            metrics.register("server-" + reservationServer.getPort());
+        } catch (IOException | JMException e) {
+            System.out.println("Cannot start the server on port " + port + ": " + e.getMessage());
+            return;
+        }
+        reservationServer.setMetrics(metrics);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            reservationServer.stop(1);
+            inventory.saveAll();
+        }));
+        reservationServer.start();
+        System.out.println("Listening on port " + reservationServer.getPort() + " with "
+                + (reservationServer.isVirtual() ? "virtual threads" : "a thread pool") + ", flights in " + dataDir);
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads and writes the binary snapshot of the reservations of a flight.
+ * <p>
+ * The file starts with a magic number and a format version, followed by a string table holding
+ * every passenger name, group name and seat preference once, and one fixed-width record per
+ * reserved seat that refers to the string table. The file is written to a temporary file and
+ * moved over the old one, and it is read by memory-mapping it, so no line parsing is needed.
+ * A passenger without a seat preference refers to no string.
+ */
+public class ReservationSnapshot {
+    public static final int MAGIC = 0x52534E50;
+    public static final short VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    private static final int RECORD_SIZE = 3 * Integer.BYTES + 2;
+    private static final int IS_ECONOMY = 1;
+    private static final int IS_GROUPED = 2;
+    private static final int NO_STRING = -1;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Receives the passengers read from a snapshot.
+     */
+    public interface Loader {
+        /**
+         * Takes one reserved passenger.
+         *
+         * @param pas     the passenger without a seat
+         * @param seatRow the row of the seat
+         * @param seatCol the column of the seat
+         */
+        void load(Passenger pas, int seatRow, int seatCol);
+    }
+
+    /**
+     * Checks if a file starts with the magic number of a snapshot.
+     *
+     * @param file the file
+     * @return true if the file is a snapshot
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isSnapshot(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes the reserved passengers to a snapshot file, replacing the file only once all is written.
+     *
+     * @param file       the snapshot file
+     * @param passengers the reserved passengers, each holding its seat
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, List<Passenger> passengers) throws IOException {
+        HashMap<String, Integer> stringIndex = new HashMap<>();
+        ArrayList<byte[]> strings = new ArrayList<>();
+        int[] records = new int[passengers.size() * 2];
+        int stringBytes = 0;
+        for (int i = 0; i < passengers.size(); i++) {
+            Passenger pas = passengers.get(i);
+            String ref = pas.isGrouped() ? pas.getGroupName() : pas.getSeatPref();
+            for (int k = 0; k < 2; k++) {
+                String value = (k == 0) ? pas.getName() : ref;
+                if (value == null) {
+                    records[2 * i + k] = NO_STRING;
+                    continue;
+                }
+                Integer index = stringIndex.get(value);
+                if (index == null) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    if (bytes.length > Short.MAX_VALUE) {
+                        throw new IOException("Name is too long for a snapshot: " + value);
+                    }
+                    index = strings.size();
+                    stringIndex.put(value, index);
+                    strings.add(bytes);
+                    stringBytes += Short.BYTES + bytes.length;
+                }
+                records[2 * i + k] = index;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + Integer.BYTES + stringBytes
+                + Integer.BYTES + passengers.size() * RECORD_SIZE);
+        buffer.putInt(MAGIC).putShort(VERSION);
+        buffer.putInt(strings.size());
+        for (byte[] bytes : strings) {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        buffer.putInt(passengers.size());
+        for (int i = 0; i < passengers.size(); i++) {
+            Passenger pas = passengers.get(i);
+            Seat seat = pas.getSeat();
+            int flags = (pas.isEconomy() ? IS_ECONOMY : 0) | (pas.isGrouped() ? IS_GROUPED : 0);
+            buffer.putInt(records[2 * i]).putInt(records[2 * i + 1]).putInt(seat.getRow())
+                    .put((byte) seat.getCol()).put((byte) flags);
+        }
+        buffer.flip();
+
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Syncs a directory to the disk, so a file moved into it is still there after a crash.
+     * Platforms that cannot open a directory for reading, such as Windows, are skipped.
+     *
+     * @param dir the directory
+     * @throws IOException if the directory cannot be synced
+     */
+    private static void syncDirectory(File dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel opened = channel) {
+            opened.force(true);
+        }
+    }
+
+    /**
+     * Reads the reserved passengers of a snapshot file by memory-mapping it.
+     *
+     * @param file   the snapshot file
+     * @param loader receives every reserved passenger with its seat
+     * @return the number of passengers read
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static int read(File file, Loader loader) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a reservation snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+
+            // every string takes its length at least, so a count the file cannot hold is corrupt
+            int numOfStrings = buffer.getInt();
+            if (numOfStrings < 0 || numOfStrings > buffer.remaining() / Short.BYTES) {
+                throw new IOException("Corrupt reservation snapshot " + file);
+            }
+            String[] strings = new String[numOfStrings];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getShort();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Corrupt reservation snapshot " + file);
+                }
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int numOfRecords = buffer.getInt();
+            if (numOfRecords < 0 || buffer.remaining() != numOfRecords * (long) RECORD_SIZE) {
+                throw new IOException("Truncated reservation snapshot " + file);
+            }
+            for (int i = 0; i < numOfRecords; i++) {
+                String name = strings[buffer.getInt()];
+                int refIndex = buffer.getInt();
+                String ref = (refIndex == NO_STRING) ? null : strings[refIndex];
+                int seatRow = buffer.getInt();
+                int seatCol = buffer.get();
+                int flags = buffer.get();
+                boolean isEconomy = (flags & IS_ECONOMY) != 0;
+                Passenger pas = ((flags & IS_GROUPED) != 0)
+                        ? new Passenger(name, isEconomy, true, ref)
+                        : new Passenger(name, isEconomy, ref);
+                loader.load(pas, seatRow, seatCol);
+            }
+            return numOfRecords;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt reservation snapshot " + file, e);
+        }
+    }
+}
@@ -1,7 +1,13 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import javax.management.JMException;
 
     /**
      * An airplane reservation system. Allows a user to reserve and remove seats for groups or individuals.
@@ -16,9 +22,13 @@ import java.util.Scanner;
         private final String FIRST_CLASS = "F";
         private final String AVAILABILITY_CHART = "A";
         private final String MANIFEST = "M";
+        private final String STATISTICS = "S";
         private final String QUIT = "Q";
         private final String RETURN = "R";
+        private final String WAIT = "Y";
+        private static final String BATCH_OPTION = "--batch";
         private File file;
+        private Checkpointer checkpointer;
         public Scanner userInput;
         ReservationManager management;
 
@@ -28,27 +38,65 @@ import java.util.Scanner;
          * @param fileName a file name to restore and save the info after done.
          */
         public ReservationSystem(String fileName) {
-            management = new ReservationManager();
+            this(fileName, AircraftLayout.DEFAULT);
+        }
+
+        /**
+         * Constructor of the class.
+         *
+         * @param fileName a file name to restore and save the info after done.
+         * @param layout   the seat layout of the airplane.
+         */
+        public ReservationSystem(String fileName, AircraftLayout layout) {
+            management = new ReservationManager(layout);
+            management.setNotificationSink(new ConsoleNotificationSink());
+            HistogramReservationMetrics metrics = new HistogramReservationMetrics();
+            metrics.addCabinFillGauges("", management);
+            management.setMetrics(metrics);
+            try {
+                metrics.register(fileName);
+            } catch (JMException e) {
+                System.out.println("Cannot register the metrics: " + e.getMessage());
+            }
             userInput = new Scanner(System.in);
             maybeCreateFile(fileName);
-            runMenu();
         }
 
         /**
-         * Checks if the file exists, if not creates a file.
+         * Checks if the file exists, if not creates a file. While the program runs, changed seat
+         * rows are checkpointed in the background to a page file next to it, and bookings made
+         * since the last checkpoint are recorded in a journal. The page file and journal take
+         * precedence over the file when they exist.
          *
          * @param fileName the file name
          */
         private void maybeCreateFile(String fileName) {
             this.file = new File(fileName);
-            if (file.exists()) {
-                management.restoreInfoFromFile(file);
+            try {
+                checkpointer = new Checkpointer(file, management);
+            } catch (IOException e) {
+                System.out.println("Cannot open the checkpoint file: " + e.getMessage());
+            }
+            if (file.exists() && (checkpointer == null || !checkpointer.hasCheckpoint())) {
+                try {
+                    management.restore(file);
+                } catch (IOException e) {
+                    System.out.println("Cannot restore the reservations: " + e.getMessage());
+                }
             }
             try {
                 file.createNewFile();
             } catch (IOException e) {
                 e.getStackTrace();
             }
+            if (checkpointer != null) {
+                try {
+                    checkpointer.recover();
+                    checkpointer.start(Checkpointer.DEFAULT_PERIOD_MILLIS);
+                } catch (IOException e) {
+                    System.out.println("Cannot recover the reservation journal: " + e.getMessage());
+                }
+            }
         }
 
         /**
@@ -149,6 +197,10 @@ import java.util.Scanner;
             if (management.isNameDuplicated(false, name)){
                 System.out.println("The name is already in the system. Please try another reservation");
                 return;
+            }
+            if (ReservationManager.isNameTooLong(name)) {
+                System.out.println("The name is too long. Please try another reservation");
+                return;
             }
                 serviceClass = checkServiceClassRequest(2, 1);
 
@@ -160,12 +212,51 @@ import java.util.Scanner;
             boolean isEconomy = (serviceClass.equalsIgnoreCase(ECONOMY_CLASS));
 
             boolean isAddSuccessful;
+            SeatType fullSeatType = null;
             do {
                 System.out.println((isEconomy) ? "Seat preference: [W]indow, [C]enter or [A]isle." :
                         "Seat Preference: [W]indow or [A]isle.");
-                String seatPref = userInput.nextLine();
-                seatPref = seatPref.toUpperCase();
-                isAddSuccessful = management.makeIndividualReservation(name, isEconomy, seatPref);
+                String answer = userInput.nextLine().toUpperCase();
+                if (answer.equals(WAIT) && fullSeatType != null) {
+                    ReservationResult result = management.reserveOrWaitlist(name, isEconomy, fullSeatType, Waitlist.DEFAULT_TIER);
+                    switch (result.getStatus()) {
+                        case WAITLISTED:
+                            System.out.println("Added to the waitlist");
+                            break;
+                        case RESERVED:
+                            System.out.println("A seat was freed and reserved");
+                            break;
+                        case NAME_TAKEN:
+                            System.out.println("The name is already in the system or on the waitlist. Please try another reservation");
+                            break;
+                        default:
+                            System.out.println("Failed to add the passenger. Please try again");
+                            break;
+                    }
+                    return;
+                }
+                SeatType seatType = SeatType.fromCode(answer);
+                ReservationResult result = management.makeIndividualReservation(name, isEconomy, seatType);
+                isAddSuccessful = result.isSuccessful();
+                switch (result.getStatus()) {
+                    case RESERVED:
+                        break;
+                    case NO_SEAT_AVAILABLE:
+                        fullSeatType = seatType;
+                        System.out.println((seatType != null)
+                                ? "No more seats for this type. Please choose another seat preference, or [Y] to wait for a cancellation"
+                                : "No more seats for this type. Please choose another seat preference");
+                        break;
+                    case NAME_TAKEN:
+                        System.out.println("The name is already in the system. Please try another reservation");
+                        return;
+                    case NAME_TOO_LONG:
+                        System.out.println("The name is too long. Please try another reservation");
+                        return;
+                    default:
+                        System.out.println("Failed to add the passenger. Please try again");
+                        return;
+                }
             } while (!isAddSuccessful);
         }
 
@@ -202,7 +293,7 @@ import java.util.Scanner;
 
             if (serviceClass != null) {
                 boolean isEconomy = (serviceClass.equalsIgnoreCase(ECONOMY_CLASS));
-                if (management.makeGroupReservation(nameOfPass, gName, isEconomy))
+                if (management.makeGroupReservation(nameOfPass, gName, isEconomy).isSuccessful())
                     return;
             }
 
@@ -233,7 +324,14 @@ import java.util.Scanner;
          * Saves and exits the program.
          */
         private void quit() {
-            management.saveInfoToFile(file);
+            if (checkpointer != null) {
+                try {
+                    checkpointer.close();
+                } catch (IOException e) {
+                    System.out.println("Cannot write the last checkpoint: " + e.getMessage());
+                }
+            }
+            management.saveSnapshot(file);
             userInput.close();
             System.exit(0);
 
@@ -263,18 +361,43 @@ import java.util.Scanner;
                 case MANIFEST:
                     printList(true);
                     break;
+                case STATISTICS:
+                    System.out.print(management.getMetrics().dump());
+                    break;
                 case QUIT:
                     quit();
                     break;
             }
         }
 
+        /**
+         * Runs the commands of a feed without prompts, prints a summary, then saves and exits.
+         * Bookings are synced to the disk by the checkpoints instead of one at a time.
+         *
+         * @param commandFile the feed, see BatchProcessor for the format
+         */
+        public void runBatch(File commandFile) {
+            management.setNotificationSink(NoOpNotificationSink.INSTANCE);
+            if (checkpointer != null) {
+                checkpointer.setSyncOnCommit(false);
+            }
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+            BatchProcessor processor = new BatchProcessor(management, out);
+            try (BufferedReader in = new BufferedReader(new FileReader(commandFile))) {
+                processor.process(in);
+                processor.printSummary();
+            } catch (IOException e) {
+                System.out.println("Cannot read the commands: " + e.getMessage());
+            }
+            quit();
+        }
+
         /**
          * Prompts the user for commands.
          */
         public void runMenu() {
             while (true) {
-                System.out.println("Add [P]assenger, Add [G]roup, [C]ancel Reservation, Print Seating [A]vailability Chart, Print [M]anifest, [Q]uit");
+                System.out.println("Add [P]assenger, Add [G]roup, [C]ancel Reservation, Print Seating [A]vailability Chart, Print [M]anifest, Print [S]tatistics, [Q]uit");
                 try {
                     String input = userInput.nextLine();
                     doRequest(input.toUpperCase());
@@ -285,14 +408,41 @@ import java.util.Scanner;
         }
 
 
+    /**
+     * Starts the reservation system.
+     * Usage: java ReservationSystem [file name] [layout file]
+     * or: java ReservationSystem --batch commands file name [layout file]
+     *
+     * @param args the command line arguments
+     */
     public static void main(String[] args) {
+        boolean isBatch = (args.length > 0 && args[0].equals(BATCH_OPTION));
+        int first = isBatch ? 2 : 0;
+        if (isBatch && args.length < 3) {
+            System.out.println("Usage: java ReservationSystem --batch commands flightname [layout file]");
+            return;
+        }
 
-        if (args.length <= 0) {
+        ReservationSystem system;
+        if (args.length <= first) {
             System.out.println("Please enter a file name for saving data:");
             Scanner userInput = new Scanner(System.in);
             String fileName  = userInput.nextLine();
-            new ReservationSystem(fileName);}
-        else {new ReservationSystem(args[0]);}
+            system = new ReservationSystem(fileName);}
+        else if (args.length == first + 1) {system = new ReservationSystem(args[first]);}
+        else {
+            try {
+                system = new ReservationSystem(args[first], AircraftLayout.load(new File(args[first + 1])));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Cannot load the airplane layout: " + e.getMessage());
+                return;
+            }
+        }
 
+        if (isBatch) {
+            system.runBatch(new File(args[1]));
+        } else {
+            system.runMenu();
+        }
     }
 }
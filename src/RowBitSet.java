@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One object of RowBitSet is a fixed size set of row indexes that can be changed and
+ * searched by many threads at the same time. Every bit is changed with a compare-and-set
+ * on its word, so changes of different rows never get lost.
+ */
+public class RowBitSet {
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private final int numOfBits;
+    private final AtomicLongArray words;
+
+    /**
+     * Constructor of the class
+     *
+     * @param numOfBits number of rows in the set
+     */
+    public RowBitSet(int numOfBits) {
+        this.numOfBits = numOfBits;
+        words = new AtomicLongArray(((numOfBits - 1) >> ADDRESS_BITS_PER_WORD) + 1);
+    }
+
+    /**
+     * Adds or removes a row.
+     *
+     * @param index index of the row
+     * @param value true to add the row, false to remove it
+     */
+    public void set(int index, boolean value) {
+        int wordIndex = index >> ADDRESS_BITS_PER_WORD;
+        long bit = 1L << index;
+        long word;
+        long newWord;
+        do {
+            word = words.get(wordIndex);
+            newWord = value ? (word | bit) : (word & ~bit);
+            if (newWord == word) {
+                return;
+            }
+        } while (!words.compareAndSet(wordIndex, word, newWord));
+    }
+
+    /**
+     * Checks if a row is in the set.
+     *
+     * @param index index of the row
+     * @return true if the row is in the set
+     */
+    public boolean get(int index) {
+        return (words.get(index >> ADDRESS_BITS_PER_WORD) & (1L << index)) != 0;
+    }
+
+    /**
+     * Finds the first row in the set at or after an index.
+     *
+     * @param from the index to start from
+     * @return the index of the row or -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        if (from >= numOfBits) {
+            return -1;
+        }
+        int wordIndex = from >> ADDRESS_BITS_PER_WORD;
+        long word = words.get(wordIndex) & (-1L << from);
+        while (word == 0) {
+            if (++wordIndex == words.length()) {
+                return -1;
+            }
+            word = words.get(wordIndex);
+        }
+        return (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+    }
+}
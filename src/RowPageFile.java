@@ -0,0 +1,320 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot file with one page per seat row, so a checkpoint rewrites only the rows that changed.
+ * <p>
+ * Every row has two page slots. A checkpoint writes a changed row into the slot that does not
+ * hold the row's last committed page, and then commits by writing a header with the checkpoint
+ * number and the journal segment that continues from it. The header also has two slots. Pages
+ * and headers carry a CRC32, and pages of a checkpoint that was not committed are ignored, so a
+ * crash in the middle of a checkpoint leaves the last committed checkpoint intact.
+ */
+public class RowPageFile {
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    private static final int MAGIC = 0x52504746;
+    private static final short VERSION = 1;
+    private static final int HEADER_SLOT_SIZE = 64;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + 2 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int PAGE_HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int ROW_HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    private static final int MAX_PASSENGER_SIZE = 2 * Byte.BYTES + 2 * (Short.BYTES + ReservationManager.MAX_NAME_BYTES);
+    private static final int IS_ECONOMY = 1;
+    private static final int IS_GROUPED = 2;
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private final int numOfRows;
+    private final byte[] committedSlots;
+    private final byte[] writtenSlots;
+    private MappedByteBuffer pages;
+    private long checkpointNum = 0;
+    private long journalSegment = 0;
+
+    /**
+     * Constructor of the class. Opens the file or creates an empty one and finds the last
+     * committed page of every row.
+     *
+     * @param file      the page file
+     * @param numOfRows number of seat rows of the airplane
+     * @param pageSize  size of a page, large enough for the names of a full row
+     * @throws IOException if the file cannot be opened or belongs to another airplane
+     */
+    public RowPageFile(File file, int numOfRows, int pageSize) throws IOException {
+        this.numOfRows = numOfRows;
+        this.pageSize = pageSize;
+        committedSlots = new byte[numOfRows];
+        writtenSlots = new byte[numOfRows];
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        pages = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        readHeader();
+        for (int i = 0; i < numOfRows; i++) {
+            committedSlots[i] = findCommittedSlot(i);
+            writtenSlots[i] = committedSlots[i];
+        }
+    }
+
+    /**
+     * Reads the committed header slot with the highest checkpoint number.
+     *
+     * @throws IOException if the header belongs to another airplane or page size
+     */
+    private void readHeader() throws IOException {
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = slot * HEADER_SLOT_SIZE;
+            if (pages.capacity() < offset + HEADER_SIZE + Integer.BYTES) {
+                continue;
+            }
+            ByteBuffer header = pages.duplicate();
+            header.position(offset);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                continue;
+            }
+            int filePageSize = header.getInt();
+            int fileNumOfRows = header.getInt();
+            long fileCheckpointNum = header.getLong();
+            long fileJournalSegment = header.getLong();
+            if (crc(pages, offset, HEADER_SIZE) != header.getInt() || fileCheckpointNum <= checkpointNum) {
+                continue;
+            }
+            if (filePageSize != pageSize || fileNumOfRows != numOfRows) {
+                throw new IOException("The page file was written for another airplane");
+            }
+            checkpointNum = fileCheckpointNum;
+            journalSegment = fileJournalSegment;
+        }
+    }
+
+    /**
+     * Finds the slot holding the last committed page of a row.
+     *
+     * @param index the index of the row
+     * @return the slot, or -1 if the row has no committed page
+     */
+    private byte findCommittedSlot(int index) {
+        byte found = -1;
+        long foundNum = 0;
+        for (byte slot = 0; slot < 2; slot++) {
+            long offset = getPageOffset(index, slot);
+            if (pages.capacity() < offset + PAGE_HEADER_SIZE) {
+                continue;
+            }
+            int length = pages.getInt((int) offset);
+            if (length <= 0 || length > pageSize - PAGE_HEADER_SIZE) {
+                continue;
+            }
+            long pageNum = pages.getLong((int) offset + Integer.BYTES);
+            int pageCrc = pages.getInt((int) offset + Integer.BYTES + Long.BYTES);
+            int dataOffset = (int) offset + PAGE_HEADER_SIZE;
+            if (pageNum > checkpointNum || pageNum <= foundNum || crc(pages, dataOffset, length) != pageCrc) {
+                continue;
+            }
+            found = slot;
+            foundNum = pageNum;
+        }
+        return found;
+    }
+
+    /**
+     * Computes the CRC32 of a part of a buffer.
+     *
+     * @param buffer the buffer
+     * @param offset start of the part
+     * @param length length of the part
+     * @return the checksum
+     */
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer part = buffer.duplicate();
+        part.position(offset).limit(offset + length);
+        CRC32 crc = new CRC32();
+        crc.update(part);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Gets the position of a page slot in the file.
+     *
+     * @param index the index of the row
+     * @param slot  the slot, 0 or 1
+     * @return the position
+     */
+    private long getPageOffset(int index, int slot) {
+        return pageSize + (2L * index + slot) * pageSize;
+    }
+
+    /**
+     * Accessor of the number of the last committed checkpoint.
+     *
+     * @return the checkpoint number, 0 if nothing is committed
+     */
+    public long getCheckpointNum() {
+        return checkpointNum;
+    }
+
+    /**
+     * Accessor of the journal segment that continues from the last committed checkpoint.
+     *
+     * @return the journal segment
+     */
+    public long getJournalSegment() {
+        return journalSegment;
+    }
+
+    /**
+     * Reads the passengers of the last committed page of every row. Must be called before
+     * the first checkpoint is committed.
+     *
+     * @param loader receives every reserved passenger with its seat
+     * @return the number of passengers read
+     * @throws IOException if a page cannot be decoded
+     */
+    public int read(ReservationSnapshot.Loader loader) throws IOException {
+        int numOfPas = 0;
+        try {
+            for (int i = 0; i < numOfRows; i++) {
+                if (committedSlots[i] < 0) {
+                    continue;
+                }
+                ByteBuffer page = pages.duplicate();
+                page.position((int) getPageOffset(i, committedSlots[i]) + PAGE_HEADER_SIZE);
+                int seatRow = page.getInt();
+                int count = page.getShort();
+                for (int k = 0; k < count; k++) {
+                    int seatCol = page.get();
+                    int flags = page.get();
+                    String name = readString(page);
+                    String ref = readString(page);
+                    boolean isEconomy = (flags & IS_ECONOMY) != 0;
+                    Passenger pas = ((flags & IS_GROUPED) != 0)
+                            ? new Passenger(name, isEconomy, true, ref)
+                            : new Passenger(name, isEconomy, ref);
+                    loader.load(pas, seatRow, seatCol);
+                    numOfPas++;
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt page in the page file", e);
+        }
+        return numOfPas;
+    }
+
+    /**
+     * Reads a string written by encodeRow.
+     *
+     * @param page the page positioned at the string
+     * @return the string
+     */
+    private static String readString(ByteBuffer page) {
+        byte[] bytes = new byte[page.getShort() & 0xFFFF];
+        page.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the page size for an airplane: the default size, or the multiple of it that holds the
+     * widest row full of passengers whose names are as long as a booking allows.
+     *
+     * @param widestRow number of seats in the widest row of the airplane
+     * @return the page size
+     */
+    public static int getPageSize(int widestRow) {
+        int maxRowSize = PAGE_HEADER_SIZE + ROW_HEADER_SIZE + widestRow * MAX_PASSENGER_SIZE;
+        return Math.max(1, (maxRowSize + DEFAULT_PAGE_SIZE - 1) / DEFAULT_PAGE_SIZE) * DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Encodes the passengers of a row into the content of a page. Must be called while
+     * the row does not change.
+     *
+     * @param row the seat row
+     * @return the page content
+     * @throws IOException if the passengers of the row do not fit in a page
+     */
+    public byte[] encodeRow(SeatRow row) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ArrayList<Passenger> passengers = row.getPasList();
+        out.writeInt(row.getRowNumber());
+        out.writeShort(passengers.size());
+        for (Passenger pas : passengers) {
+            int flags = (pas.isEconomy() ? IS_ECONOMY : 0) | (pas.isGrouped() ? IS_GROUPED : 0);
+            byte[] name = pas.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] ref = (pas.isGrouped() ? pas.getGroupName() : pas.getSeatPref()).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(pas.getSeat().getCol());
+            out.writeByte(flags);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeShort(ref.length);
+            out.write(ref);
+        }
+        if (bytes.size() > pageSize - PAGE_HEADER_SIZE) {
+            throw new IOException("Row " + row.getRowNumber() + " does not fit in a page of " + pageSize + " bytes");
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the page of a row for the next checkpoint into the slot not holding its committed page.
+     *
+     * @param index   the index of the row
+     * @param content the page content from encodeRow
+     * @throws IOException if the page cannot be written
+     */
+    public void writeRow(int index, byte[] content) throws IOException {
+        byte slot = (byte) ((committedSlots[index] == 0) ? 1 : 0);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ByteBuffer page = ByteBuffer.allocate(PAGE_HEADER_SIZE + content.length);
+        page.putInt(content.length).putLong(checkpointNum + 1).putInt((int) crc.getValue()).put(content).flip();
+        long position = getPageOffset(index, slot);
+        while (page.hasRemaining()) {
+            position += channel.write(page, position);
+        }
+        writtenSlots[index] = slot;
+    }
+
+    /**
+     * Commits the written pages as the next checkpoint, syncing them to the disk first.
+     *
+     * @param nextJournalSegment the journal segment that continues from this checkpoint
+     * @throws IOException if the checkpoint cannot be committed
+     */
+    public void commit(long nextJournalSegment) throws IOException {
+        channel.force(false);
+        long nextCheckpointNum = checkpointNum + 1;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + Integer.BYTES);
+        header.putInt(MAGIC).putShort(VERSION).putInt(pageSize).putInt(numOfRows)
+                .putLong(nextCheckpointNum).putLong(nextJournalSegment);
+        header.putInt(crc(header, 0, HEADER_SIZE)).flip();
+        long position = (nextCheckpointNum % 2) * HEADER_SLOT_SIZE;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        channel.force(false);
+        checkpointNum = nextCheckpointNum;
+        journalSegment = nextJournalSegment;
+        System.arraycopy(writtenSlots, 0, committedSlots, 0, numOfRows);
+        pages = null;
+    }
+
+    /**
+     * Closes the page file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        pages = null;
+        channel.close();
+    }
+}
@@ -1,9 +1,17 @@
 /**
- * One object of Seat class represents a seat in seat row.
+ * One object of Seat class represents a seat in seat row. Seats are immutable, so one object per
+ * seat number is shared by all bookings through of, and a passenger keeps only the packed int.
+ * The shared seats cover every row number a layout can have.
  */
 public class Seat {
-    private int row;
-    private int col;
+    private final static int CONVERT_NUM_TO_CHAR = 65;
+    private final static int COL_BITS = 8;
+    private final static int CACHED_ROWS = AircraftLayout.MAX_ROW_NUMBER + 1;
+    private final static int CACHED_COLS = SeatRow.MAX_SEATS_IN_ROW;
+    private final static Seat[] CACHE = new Seat[CACHED_ROWS * CACHED_COLS];
+    public final static int NO_SEAT = -1;
+    private final int row;
+    private final int col;
 
     /**
      * Constructor of the class
@@ -16,6 +24,58 @@ public class Seat {
         this.col = col;
     }
 
+    /**
+     * Gets the shared seat of a row and column. Racing threads may both create a seat, which
+     * is harmless since seats are immutable.
+     *
+     * @param row a row number of seat
+     * @param col a column number of seat
+     * @return the seat, a new one only for a row or column no layout has
+     */
+    public static Seat of(int row, int col) {
+        if (row < 0 || row >= CACHED_ROWS || col < 0 || col >= CACHED_COLS) {
+            return new Seat(row, col);
+        }
+        int index = row * CACHED_COLS + col;
+        Seat seat = CACHE[index];
+        if (seat == null) {
+            seat = new Seat(row, col);
+            CACHE[index] = seat;
+        }
+        return seat;
+    }
+
+    /**
+     * Packs a row and column into one int
+     *
+     * @param row a row number of seat
+     * @param col a column number of seat
+     * @return the packed seat
+     */
+    public static int pack(int row, int col) {
+        return (row << COL_BITS) | col;
+    }
+
+    /**
+     * Gets the row number of a packed seat
+     *
+     * @param packedSeat the packed seat
+     * @return a row number
+     */
+    public static int rowOf(int packedSeat) {
+        return packedSeat >> COL_BITS;
+    }
+
+    /**
+     * Gets the column number of a packed seat
+     *
+     * @param packedSeat the packed seat
+     * @return a column number
+     */
+    public static int colOf(int packedSeat) {
+        return packedSeat & ((1 << COL_BITS) - 1);
+    }
+
     /**
      * Get the column number of the seat
      *
@@ -33,4 +93,14 @@ public class Seat {
     public int getRow() {
         return row;
     }
+
+    /**
+     * Gets the letter of a seat column
+     *
+     * @param col a column number of seat
+     * @return the letter of the column
+     */
+    public static char toColumnLetter(int col) {
+        return (char) (col + CONVERT_NUM_TO_CHAR);
+    }
 }
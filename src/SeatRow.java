@@ -1,68 +1,84 @@
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * One object of SeatRow class represents a row of seat in the airplane.
+ * Occupancy is kept as a bitmask of free seats where bit i is the seat in column i,
+ * so the allocation decisions are a few bit operations on primitive longs.
+ * A lock-free row claims seats with compare-and-set on the bitmask instead of
+ * relying on the caller to lock the row.
+ * A seat can be held for a passenger before the booking is confirmed: it is taken out of the
+ * free seats, so no search offers it, and marked in a bitmask of held seats, so the passenger
+ * is left out of the row's passenger list until the hold is confirmed.
  */
 public class SeatRow {
-    private final static int NUM_SEATS_DEFAULT = 2;
-    private final static int NUM_CEN_SEAT_FIRST_CLASS = 0;
-    private String[] seatMap;
-    private Hashtable<String, ArrayList<Integer>> indexOfSeatType;
+    public static final int MAX_SEATS_IN_ROW = Long.SIZE;
+    public static final int NUM_SEAT_TYPES = SeatType.count();
+    private static final VarHandle FREE_SEATS;
+    private static final VarHandle HELD_SEATS;
+    private static final VarHandle IS_DIRTY;
+    private static final VarHandle SEATS = MethodHandles.arrayElementVarHandle(Passenger[].class);
+    private AircraftLayout.Cabin cabin;
+    private boolean isLockFree;
+    private long allSeatsMask;
+    private long freeSeats;
+    private long heldSeats;
     private int totalSeatsInRow;
-    private int numOfCenterSeat;
-    private int numOfAisleSeat;
-    private int numOfWindowSeat;
-    private int totalVacantSeats;
-    private static final String WIN_SEAT = "W";
-    private static final String CEN_SEAT = "C";
-    private static final String AIS_SEAT = "A";
-    public static final String[] ECONOMY_SEATS_MAP = {"W", "C", "A", "A", "C", "W"};
-    public static final String[] FIRST_CLASS_SEAT_MAP = {"W", "A", "A", "W"};
     private int rowNumber = -1;
     private Passenger[] seatRow;
+    private volatile boolean isDirty = false;
+
+    static {
+        try {
+            FREE_SEATS = MethodHandles.lookup().findVarHandle(SeatRow.class, "freeSeats", long.class);
+            HELD_SEATS = MethodHandles.lookup().findVarHandle(SeatRow.class, "heldSeats", long.class);
+            IS_DIRTY = MethodHandles.lookup().findVarHandle(SeatRow.class, "isDirty", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
 
     /**
      * Constructor of the class
      *
-     * @param isEconomy if the row is first or economy Class
-     * @param rowNum    row number
+     * @param cabin  the cabin the row belongs to
+     * @param rowNum row number
      */
-    public SeatRow(boolean isEconomy, int rowNum) {
-        if (isEconomy) {
-            numOfCenterSeat = NUM_SEATS_DEFAULT;
-            seatMap = ECONOMY_SEATS_MAP;
-        } else {
-            numOfCenterSeat = NUM_CEN_SEAT_FIRST_CLASS;
-            seatMap = FIRST_CLASS_SEAT_MAP;
-        }
-        numOfAisleSeat = NUM_SEATS_DEFAULT;
-        numOfWindowSeat = NUM_SEATS_DEFAULT;
-        createSeatMap();
+    public SeatRow(AircraftLayout.Cabin cabin, int rowNum) {
+        this(cabin, rowNum, false);
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param cabin      the cabin the row belongs to
+     * @param rowNum     row number
+     * @param isLockFree true to claim seats with compare-and-set so the row needs no lock
+     */
+    public SeatRow(AircraftLayout.Cabin cabin, int rowNum, boolean isLockFree) {
+        this.cabin = cabin;
+        this.isLockFree = isLockFree;
         rowNumber = rowNum;
 
-        totalSeatsInRow = numOfAisleSeat + numOfWindowSeat + numOfCenterSeat;
-        totalVacantSeats = totalSeatsInRow;
-        seatRow = new Passenger[totalVacantSeats];
+        totalSeatsInRow = cabin.getSeatsInRow();
+        allSeatsMask = (totalSeatsInRow == MAX_SEATS_IN_ROW) ? -1L : (1L << totalSeatsInRow) - 1;
+        freeSeats = allSeatsMask;
+        seatRow = new Passenger[totalSeatsInRow];
     }
 
-
     /**
-     * Creates indexes of array corresponding to the location of different seat types in a seat row
+     * Converts a seat type to the index used for the seat type masks
      *
-     * @return a hash table with key as a seat type and indexes as value
+     * @param seatType type of seat either window, center or aisle
+     * @return the index of the seat type or -1 if the type is unknown
      */
-    private void createSeatMap() {
-        indexOfSeatType = new Hashtable<String, ArrayList<Integer>>();
-        for (int i = 0; i < seatMap.length; i++) {
-            String key = seatMap[i];
-            if (!indexOfSeatType.containsKey(key)) {
-                indexOfSeatType.put(seatMap[i], new ArrayList<>());
-            }
-            indexOfSeatType.get(key).add(i);
-        }
+    public static int seatTypeIndex(SeatType seatType) {
+        return (seatType == null) ? -1 : seatType.ordinal();
     }
 
 
@@ -72,21 +88,22 @@ public class SeatRow {
      * @return a number of the seats
      */
     public int findMaxAdjacentSeats() {
+        return findMaxAdjacentSeats(getFreeSeats());
+    }
 
-        if (totalVacantSeats <= 0) return totalVacantSeats;
+    /**
+     * Find maximum number of adjacent seats in a bitmask of empty seats
+     *
+     * @param free a bitmask of empty seats
+     * @return a number of the seats
+     */
+    public static int findMaxAdjacentSeats(long free) {
+        long run = free;
         int maxAdjacent = 0;
-        int vacantSeats = 0;
-
-        for (Passenger k : seatRow) {
-
-            if (k == null)
-                vacantSeats++;
-
-            else
-                vacantSeats = 0;
 
-            if (vacantSeats > maxAdjacent)
-                maxAdjacent = vacantSeats;
+        while (run != 0) {
+            run &= run >>> 1;
+            maxAdjacent++;
         }
         return maxAdjacent;
     }
@@ -99,39 +116,91 @@ public class SeatRow {
      * @return true if successfully adds all passengers otherwise false
      */
 
-    public boolean groupReservation(ArrayList<Passenger> passengers) {
-        int totalSeatBeforeAdd = totalVacantSeats;
-        int[] seatColList = getAdjacentSeatsList(passengers.size());
-        for (int i = 0; i < passengers.size(); i++) {
-            addToSeat(passengers.get(i), seatColList[i]);
+    public boolean groupReservation(List<Passenger> passengers) {
+        int numOfSeat = passengers.size();
+        int firstCol;
+        if (isLockFree) {
+            firstCol = claimAdjacentSeats(numOfSeat);
+        } else {
+            firstCol = findAdjacentSeatsStart(freeSeats, numOfSeat);
+            if (firstCol >= 0) {
+                freeSeats &= ~adjacentSeatsMask(firstCol, numOfSeat);
+            }
+        }
+        if (firstCol < 0) {
+            return false;
+        }
+        for (int i = 0; i < numOfSeat; i++) {
+            seatPassenger(passengers.get(i), firstCol + i);
         }
-        return (totalSeatBeforeAdd - totalVacantSeats == passengers.size());
+        return true;
     }
 
     /**
-     * Gets indexes of empty adjacent seats
+     * Claims a block of empty adjacent seats with compare-and-set, retrying when another thread
+     * changes the row in between
      *
-     * @param numOfSeat maximum number of the seats found in row
-     * @return an array of indexes of the seat
+     * @param numOfSeat number of adjacent seats needed
+     * @return the column of the leftmost claimed seat or -1 if the row has no such block
      */
+    private int claimAdjacentSeats(int numOfSeat) {
+        while (true) {
+            long free = (long) FREE_SEATS.getVolatile(this);
+            int firstCol = findAdjacentSeatsStart(free, numOfSeat);
+            if (firstCol < 0) {
+                return -1;
+            }
+            if (FREE_SEATS.compareAndSet(this, free, free & ~adjacentSeatsMask(firstCol, numOfSeat))) {
+                return firstCol;
+            }
+        }
+    }
 
-    private int[] getAdjacentSeatsList(int numOfSeat) {
-        int[] seatPosList = new int[numOfSeat];
-        int index = 0;
-        int i = 0;
+    /**
+     * Gets the first column of a block of empty adjacent seats
+     *
+     * @param free      a bitmask of empty seats
+     * @param numOfSeat number of adjacent seats needed
+     * @return the column of the leftmost seat of the block or -1 if there is none
+     */
+    private static int findAdjacentSeatsStart(long free, int numOfSeat) {
+        if (numOfSeat <= 0) return 0;
+        long starts = free;
+        for (int i = 1; i < numOfSeat && starts != 0; i++) {
+            starts &= free >>> i;
+        }
+        return (starts == 0) ? -1 : Long.numberOfTrailingZeros(starts);
+    }
 
-        while (index < numOfSeat) {
-            if (seatRow[i] == null) {
-                seatPosList[index] = i;
-                index++;
+    /**
+     * Gets the bitmask of a block of adjacent seats
+     *
+     * @param firstCol  the column of the leftmost seat
+     * @param numOfSeat number of seats in the block
+     * @return the bitmask of the block
+     */
+    private static long adjacentSeatsMask(int firstCol, int numOfSeat) {
+        long block = (numOfSeat == MAX_SEATS_IN_ROW) ? -1L : (1L << numOfSeat) - 1;
+        return block << firstCol;
+    }
 
-            } else {
-                index = 0;
-            }
-            i++;
+    /**
+     * Marks the row as changed since the last checkpoint. A row already marked is only read,
+     * so bookings of a changed row do not keep writing the mark.
+     */
+    public void markDirty() {
+        if (!isDirty) {
+            isDirty = true;
         }
+    }
 
-        return seatPosList;
+    /**
+     * Takes the mark of a row changed since the last checkpoint
+     *
+     * @return true if the row was marked
+     */
+    public boolean takeDirty() {
+        return isDirty && (boolean) IS_DIRTY.getAndSet(this, false);
     }
 
     /**
@@ -151,36 +220,126 @@ public class SeatRow {
      * @return true if successfully add the passenger.
      */
     public boolean addIndividualToSeat(Passenger pas) {
+        int col = claimIndividualSeat(pas);
+        if (col < 0) {
+            return false;
+        }
+        seatPassenger(pas, col);
+        return true;
+    }
 
-        String seatType = pas.getSeatPref();
-
-        ArrayList<Integer> columnOfSeat;
-        int numOfVacantSeat = 0;
+    /**
+     * Holds a seat of the passenger's preferred type until the hold is confirmed or released
+     *
+     * @param pas the passenger to hold the seat for
+     * @return true if a seat is held, the passenger then holds the seat
+     */
+    public boolean holdIndividualSeat(Passenger pas) {
+        int col = claimIndividualSeat(pas);
+        if (col < 0) {
+            return false;
+        }
+        if (isLockFree) {
+            HELD_SEATS.getAndBitwiseOr(this, 1L << col);
+        } else {
+            heldSeats |= 1L << col;
+        }
+        seatPassenger(pas, col);
+        return true;
+    }
 
-        switch (seatType) {
-            case WIN_SEAT:
-                numOfVacantSeat = numOfWindowSeat;
-                break;
+    /**
+     * Turns a held seat into a reserved one
+     *
+     * @param col the column of the held seat
+     * @return false if the seat is not held
+     */
+    public boolean confirmHeldSeat(int col) {
+        long seat = 1L << col;
+        if (isLockFree) {
+            return ((long) HELD_SEATS.getAndBitwiseAnd(this, ~seat) & seat) != 0;
+        }
+        if ((heldSeats & seat) == 0) {
+            return false;
+        }
+        heldSeats &= ~seat;
+        return true;
+    }
 
-            case CEN_SEAT:
-                numOfVacantSeat = numOfCenterSeat;
-                break;
+    /**
+     * Gets the seats held for passengers whose bookings are not confirmed yet
+     *
+     * @return a bitmask of the held seat columns
+     */
+    public long getHeldSeats() {
+        return isLockFree ? (long) HELD_SEATS.getVolatile(this) : heldSeats;
+    }
 
-            case AIS_SEAT:
-                numOfVacantSeat = numOfAisleSeat;
-                break;
+    /**
+     * Takes an empty seat of the passenger's preferred type out of the empty seats
+     *
+     * @param pas the passenger
+     * @return the column of the seat or -1 if the row has none
+     */
+    private int claimIndividualSeat(Passenger pas) {
+        int typeIndex = seatTypeIndex(pas.getSeatType());
+        if (typeIndex < 0) {
+            return -1;
+        }
+        int col;
+        if (isLockFree) {
+            col = claimSeatOfType(typeIndex);
+        } else {
+            long vacant = freeSeats & cabin.getTypeMask(typeIndex);
+            col = (vacant == 0) ? -1 : Long.numberOfTrailingZeros(vacant);
+            if (col >= 0) {
+                freeSeats &= ~(1L << col);
+            }
         }
-        if (numOfVacantSeat > 0) {
-            columnOfSeat = indexOfSeatType.get(seatType);
-            for (int col : columnOfSeat) {
+        return col;
+    }
 
-                if (seatRow[col] == null) {
-                    addToSeat(pas, col);
-                    return true;
-                }
+    /**
+     * Claims the first empty seat of a seat type with compare-and-set, retrying when another thread
+     * changes the row in between
+     *
+     * @param typeIndex index of the seat type
+     * @return the column of the claimed seat or -1 if the row has no empty seat of the type
+     */
+    private int claimSeatOfType(int typeIndex) {
+        while (true) {
+            long free = (long) FREE_SEATS.getVolatile(this);
+            long vacant = free & cabin.getTypeMask(typeIndex);
+            if (vacant == 0) {
+                return -1;
+            }
+            long seat = Long.lowestOneBit(vacant);
+            if (FREE_SEATS.compareAndSet(this, free, free & ~seat)) {
+                return Long.numberOfTrailingZeros(seat);
             }
         }
-        return false;
+    }
+
+    /**
+     * Gets the free seats of a seat type
+     *
+     * @param typeIndex index of the seat type
+     * @return a bitmask of the free seat columns of the type
+     */
+    private long freeSeatsOfType(int typeIndex) {
+        if (typeIndex < 0) return 0;
+        return getFreeSeats() & cabin.getTypeMask(typeIndex);
+    }
+
+    /**
+     * Checks if a bitmask of empty seats has an empty seat of a seat type
+     *
+     * @param free      a bitmask of empty seats
+     * @param typeIndex index of the seat type
+     * @return true if there is an empty seat of the type
+     */
+    public boolean isTheSeatAvailable(long free, int typeIndex) {
+        return (free & cabin.getTypeMask(typeIndex)) != 0;
     }
 
     /**
@@ -190,10 +349,38 @@ public class SeatRow {
      * @param col the index to add the passenger
      */
     public void addToSeat(Passenger pas, int col) {
-        seatRow[col] = pas;
-        pas.setSeat(new Seat(rowNumber, col));
-        updateAvailableSeat(-1, col);
-        totalVacantSeats--;
+        long seat = 1L << col;
+        if (isLockFree) {
+            FREE_SEATS.getAndBitwiseAnd(this, ~seat);
+        } else {
+            freeSeats &= ~seat;
+        }
+        seatPassenger(pas, col);
+    }
+
+    /**
+     * Puts a passenger on a seat that is already taken out of the empty seats
+     *
+     * @param pas the passenger to add
+     * @param col the index to add the passenger
+     */
+    private void seatPassenger(Passenger pas, int col) {
+        pas.setSeat(rowNumber, col);
+        if (isLockFree) {
+            SEATS.setRelease(seatRow, col, pas);
+        } else {
+            seatRow[col] = pas;
+        }
+    }
+
+    /**
+     * Gets the passenger on a seat
+     *
+     * @param col the column of the seat
+     * @return the passenger or null if nobody is seated there
+     */
+    private Passenger getPassenger(int col) {
+        return isLockFree ? (Passenger) SEATS.getAcquire(seatRow, col) : seatRow[col];
     }
 
     /**
@@ -202,53 +389,50 @@ public class SeatRow {
      * @param seatType type of seat either window, center or ailse
      * @return true if there is still empty seat in the row
      */
-    public boolean isTheSeatAvailable(String seatType) {
-        switch (seatType) {
-            case WIN_SEAT:
-                return (numOfWindowSeat > 0);
-            case CEN_SEAT:
-                return (numOfCenterSeat > 0);
-            case AIS_SEAT:
-                return (numOfAisleSeat > 0);
-        }
-        return false;
+    public boolean isTheSeatAvailable(SeatType seatType) {
+        return freeSeatsOfType(seatTypeIndex(seatType)) != 0;
     }
 
     /**
-     * Uses the position seat to determine what type of seat and
-     * updates the number of vacant seats when adding or removing a passenger
+     * Checks if the row still has empty seats of a seat type
      *
-     * @param num     number of a seat (negative when taking and positive when returning)
-     * @param seatCol a position of the seat in row.
+     * @param typeIndex index of the seat type
+     * @return true if there is still empty seat of the type in the row
      */
-    private void updateAvailableSeat(int num, int seatCol) {
-        String seatType;
-        seatType = seatMap[seatCol];
-        switch (seatType) {
-            case WIN_SEAT:
-                numOfWindowSeat += num;
-                break;
-            case CEN_SEAT:
-                numOfCenterSeat += num;
-                break;
-            case AIS_SEAT:
-                numOfAisleSeat += num;
-                break;
-        }
+    public boolean isTheSeatAvailable(int typeIndex) {
+        return freeSeatsOfType(typeIndex) != 0;
+    }
+
+    /**
+     * Gets the number of empty seats in the row
+     *
+     * @return the number of empty seats
+     */
+    public int getVacantSeats() {
+        return Long.bitCount(getFreeSeats());
     }
 
     /**
-     * Removes a passenger
+     * Removes a passenger. A lock-free row clears the seat with compare-and-set, so of two
+     * removals of the same passenger only one frees the seat.
      *
      * @param seatCol the position
      * @return true if successfully remove a passenger
      */
     public boolean removePasFromSeat(int seatCol) {
+        if (isLockFree) {
+            Passenger pas = getPassenger(seatCol);
+            if (pas == null || !SEATS.compareAndSet(seatRow, seatCol, pas, null)) {
+                return false;
+            }
+            HELD_SEATS.getAndBitwiseAnd(this, ~(1L << seatCol));
+            FREE_SEATS.getAndBitwiseOr(this, 1L << seatCol);
+            return true;
+        }
         if (seatRow[seatCol] != null) {
             seatRow[seatCol] = null;
-            totalVacantSeats++;
-            updateAvailableSeat(1, seatCol);
-
+            heldSeats &= ~(1L << seatCol);
+            freeSeats |= 1L << seatCol;
             return true;
         }
         return false;
@@ -260,18 +444,26 @@ public class SeatRow {
      * @return number of empty seats
      */
     public ArrayList<Integer> findEmptySpot() {
-        ArrayList<Integer> vacantSeats = new ArrayList<>();
-        if (totalVacantSeats > 0) {
-            for (int i = 0; i < seatRow.length; i++) {
-                if (seatRow[i] == null) {
-                    vacantSeats.add(i);
-                }
+        long vacant = getFreeSeats();
+        if (vacant != 0) {
+            ArrayList<Integer> vacantSeats = new ArrayList<>(Long.bitCount(vacant));
+            for (long free = vacant; free != 0; free &= free - 1) {
+                vacantSeats.add(Long.numberOfTrailingZeros(free));
             }
             return vacantSeats;
         }
         return null;
     }
 
+    /**
+     * Gets the empty seats in the row without building a list
+     *
+     * @return a bitmask where bit i is set when the seat in column i is empty
+     */
+    public long getFreeSeats() {
+        return isLockFree ? (long) FREE_SEATS.getVolatile(this) : freeSeats;
+    }
+
     /**
      * Gets all the passengers being reserved in the row
      *
@@ -279,13 +471,24 @@ public class SeatRow {
      */
     public ArrayList<Passenger> getPasList() {
         ArrayList<Passenger> pasList = new ArrayList<>();
-        if (totalVacantSeats < totalSeatsInRow) {
-            for (Passenger pas : seatRow) {
-                if (pas != null) {
-                    pasList.add(pas);
+        forEachPassenger(pasList::add);
+        return pasList;
+    }
+
+    /**
+     * Visits the passengers being reserved in the row from the first seat to the last.
+     * Passengers only holding their seats are left out.
+     *
+     * @param visitor called with each passenger
+     */
+    public void forEachPassenger(Consumer<Passenger> visitor) {
+        if (getFreeSeats() != allSeatsMask) {
+            for (int col = 0; col < seatRow.length; col++) {
+                Passenger pas = getPassenger(col);
+                if (pas != null && (getHeldSeats() & (1L << col)) == 0) {
+                    visitor.accept(pas);
                 }
             }
         }
-        return pasList;
     }
 }
@@ -0,0 +1,80 @@
+/**
+ * The type of a seat. The ordinal indexes the seat type masks of a cabin and the rows with a free
+ * seat of each type, so a booking finds its seat without comparing strings.
+ */
+public enum SeatType {
+    WINDOW('W'),
+    CENTER('C'),
+    AISLE('A');
+
+    private static final SeatType[] TYPES = values();
+    private final String code;
+
+    /**
+     * Constructor of the class
+     *
+     * @param letter the letter of the seat type in requests and files
+     */
+    SeatType(char letter) {
+        this.code = String.valueOf(letter);
+    }
+
+    /**
+     * Gets the letter of the seat type in requests and files
+     *
+     * @return the letter, W, C or A
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Gets the number of seat types
+     *
+     * @return the number of seat types
+     */
+    public static int count() {
+        return TYPES.length;
+    }
+
+    /**
+     * Gets the seat type of an ordinal
+     *
+     * @param ordinal the ordinal
+     * @return the seat type
+     */
+    public static SeatType of(int ordinal) {
+        return TYPES[ordinal];
+    }
+
+    /**
+     * Parses the letter of a seat type
+     *
+     * @param letter the letter
+     * @return the seat type, or null if the letter is unknown
+     */
+    public static SeatType fromCode(char letter) {
+        switch (letter) {
+            case 'W':
+                return WINDOW;
+            case 'C':
+                return CENTER;
+            case 'A':
+                return AISLE;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a seat type given as one letter
+     *
+     * @param code the letter
+     * @return the seat type, or null if the code is not a known letter
+     */
+    public static SeatType fromCode(String code) {
+        if (code == null || code.length() != 1) {
+            return null;
+        }
+        return fromCode(code.charAt(0));
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks after a delay on one thread, however many are waiting, using a hashed timing wheel.
+ * The wheel is a ring of buckets, one per tick; a task goes into the bucket of the tick it is due
+ * in and counts the turns of the wheel still to wait. Every tick the thread visits one bucket and
+ * runs the tasks that are due, so scheduling, cancelling and running a task each take constant
+ * time. Tasks run up to one tick late.
+ * <p>
+ * Callers hand new tasks over through a queue. A cancelled task stays in its bucket until the
+ * thread next visits the bucket, at most one turn of the wheel later.
+ */
+public class TimingWheel {
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final ConcurrentLinkedQueue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final LongAdder numOfWaiting = new LongAdder();
+    private final Thread worker;
+    private volatile boolean isStopped = false;
+    private volatile Thread.UncaughtExceptionHandler failureHandler;
+    private long tick = 0;
+
+    /**
+     * The shared wheel, started the first time it is used.
+     */
+    private static class DefaultHolder {
+        private static final TimingWheel INSTANCE = new TimingWheel(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * A task waiting in the wheel.
+     */
+    public final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = WAITING;
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+
+        /**
+         * Constructor of the class
+         *
+         * @param task     the task
+         * @param deadline when the task is due, in System.nanoTime
+         */
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Keeps the task from running.
+         *
+         * @return false if the task already ran or was cancelled
+         */
+        public boolean cancel() {
+            if (STATE.compareAndSet(this, WAITING, CANCELLED)) {
+                numOfWaiting.decrement();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Claims the task for running.
+         *
+         * @return false if the task was cancelled
+         */
+        private boolean expire() {
+            if (STATE.compareAndSet(this, WAITING, EXPIRED)) {
+                numOfWaiting.decrement();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    /**
+     * Constructor of the class, starting the thread of the wheel
+     *
+     * @param tickMillis the length of a tick, the most a task runs late
+     * @param wheelSize  the number of buckets, rounded up to a power of two
+     */
+    public TimingWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Tick must be positive and wheel size between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        buckets = new Timeout[size];
+        mask = size - 1;
+        worker = new Thread(this::run, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Gets the wheel shared by all flights, ticking every 100 ms.
+     *
+     * @return the shared wheel
+     */
+    public static TimingWheel getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Runs a task on the thread of the wheel after a delay.
+     *
+     * @param task        the task, should be quick
+     * @param delayMillis the delay
+     * @return the waiting task, to cancel it
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        if (isStopped) {
+            throw new IllegalStateException("The timing wheel is stopped");
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        numOfWaiting.increment();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Sets the handler told about tasks that throw. Without one, a failed task goes to the uncaught
+     * exception handler of the thread of the wheel. Either way the wheel keeps running other tasks.
+     *
+     * @param failureHandler the handler, called on the thread of the wheel, or null for the default
+     */
+    public void setFailureHandler(Thread.UncaughtExceptionHandler failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Gets the number of tasks neither run nor cancelled.
+     *
+     * @return the number of waiting tasks
+     */
+    public long getNumOfWaiting() {
+        return numOfWaiting.sum();
+    }
+
+    /**
+     * Stops the thread of the wheel. Waiting tasks do not run.
+     */
+    public void stop() {
+        isStopped = true;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Visits one bucket every tick until stopped.
+     */
+    private void run() {
+        while (!isStopped) {
+            long tickEnd = startTime + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = tickEnd - System.nanoTime()) > 0 && !isStopped) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            addNewTimeouts();
+            expireBucket(buckets[(int) tick & mask]);
+            tick++;
+        }
+    }
+
+    /**
+     * Puts the newly scheduled tasks into the buckets of their ticks.
+     */
+    private void addNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.state != Timeout.WAITING) {
+                continue;
+            }
+            long dueTick = Math.max(tick, (timeout.deadline - startTime + tickNanos - 1) / tickNanos - 1);
+            timeout.remainingRounds = (dueTick - tick) / buckets.length;
+            int index = (int) dueTick & mask;
+            timeout.next = buckets[index];
+            timeout.prev = null;
+            if (buckets[index] != null) {
+                buckets[index].prev = timeout;
+            }
+            buckets[index] = timeout;
+        }
+    }
+
+    /**
+     * Runs the due tasks of a bucket and drops the cancelled ones.
+     *
+     * @param head the first task of the bucket
+     */
+    private void expireBucket(Timeout head) {
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state != Timeout.WAITING) {
+                unlink(timeout);
+            } else if (timeout.remainingRounds <= 0) {
+                unlink(timeout);
+                if (timeout.expire()) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        handleFailure(e);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Hands the exception of a failed task to the failure handler.
+     *
+     * @param e the exception the task threw
+     */
+    private void handleFailure(RuntimeException e) {
+        Thread.UncaughtExceptionHandler handler = failureHandler;
+        if (handler == null) {
+            handler = worker.getUncaughtExceptionHandler();
+        }
+        try {
+            handler.uncaughtException(worker, e);
+        } catch (RuntimeException handlerFailure) {
+            // a failing handler must not stop the wheel
+        }
+    }
+
+    /**
+     * Removes a task from its bucket.
+     *
+     * @param timeout the task
+     */
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[(int) tick & mask] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.next = null;
+        timeout.prev = null;
+    }
+}
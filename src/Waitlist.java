@@ -0,0 +1,323 @@
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * The passengers and groups of a flight waiting for seats to be freed. Requests wait in sets
+ * ordered by tier, the highest first, and then by the time of the request. Passengers wait per
+ * service class and seat type, and groups per service class and the number of adjacent seats
+ * they need, so the request to seat on freed seats is found from the first request of a few sets
+ * instead of going through all waiting requests.
+ * <p>
+ * A group waits until it can sit together in one row; a group wider than the widest row of its
+ * service class waits for a row to be empty.
+ */
+public class Waitlist {
+    public static final int DEFAULT_TIER = 0;
+
+    private final TreeSet<Request>[][] passengers;
+    private final TreeSet<Request>[][] groups;
+    private final HashMap<String, Request> waitingPassengers = new HashMap<>();
+    private final HashMap<String, Request> waitingGroups = new HashMap<>();
+    private final int[] widestRows = new int[2];
+    private final int[] numOfWaiting = new int[2];
+    private volatile int numOfAllWaiting = 0;
+    private long numOfRequests = 0;
+
+    /**
+     * A passenger or group waiting for seats.
+     */
+    public static final class Request implements Comparable<Request> {
+        private final String name;
+        private final String[] names;
+        private final boolean isEconomy;
+        private final SeatType seatType;
+        private final int tier;
+        private long sequence;
+
+        /**
+         * Constructor of the class
+         *
+         * @param name      name of the passenger or group
+         * @param names     names of the passengers of a group, null for a passenger
+         * @param isEconomy true if waiting for economy class
+         * @param seatType  the seat type a passenger waits for, null for a group
+         * @param tier      the tier, a higher tier is seated first
+         */
+        private Request(String name, String[] names, boolean isEconomy, SeatType seatType, int tier) {
+            this.name = name;
+            this.names = names;
+            this.isEconomy = isEconomy;
+            this.seatType = seatType;
+            this.tier = tier;
+        }
+
+        /**
+         * Creates the request of a passenger.
+         *
+         * @param name      name of the passenger
+         * @param isEconomy true if waiting for economy class
+         * @param seatType  the seat type
+         * @param tier      the tier, a higher tier is seated first
+         * @return the request
+         */
+        public static Request ofPassenger(String name, boolean isEconomy, SeatType seatType, int tier) {
+            return new Request(name, null, isEconomy, seatType, tier);
+        }
+
+        /**
+         * Creates the request of a group.
+         *
+         * @param gName     name of the group
+         * @param names     names of the passengers of the group
+         * @param isEconomy true if waiting for economy class
+         * @param tier      the tier, a higher tier is seated first
+         * @return the request
+         */
+        public static Request ofGroup(String gName, String[] names, boolean isEconomy, int tier) {
+            return new Request(gName, names, isEconomy, null, tier);
+        }
+
+        /**
+         * Accessor of the name.
+         *
+         * @return name of the passenger or group
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Accessor of the names of the passengers of a group.
+         *
+         * @return the names, null for a passenger
+         */
+        public String[] getNames() {
+            return names;
+        }
+
+        /**
+         * Checks if the request is for a group.
+         *
+         * @return true for a group
+         */
+        public boolean isGroup() {
+            return names != null;
+        }
+
+        /**
+         * Accessor of the service class.
+         *
+         * @return true if waiting for economy class
+         */
+        public boolean isEconomy() {
+            return isEconomy;
+        }
+
+        /**
+         * Accessor of the seat type.
+         *
+         * @return the seat type a passenger waits for, null for a group
+         */
+        public SeatType getSeatType() {
+            return seatType;
+        }
+
+        /**
+         * Orders the requests by tier, the highest first, then by the time they were made.
+         *
+         * @param other the other request
+         * @return a negative number if this request is seated first
+         */
+        @Override
+        public int compareTo(Request other) {
+            if (tier != other.tier) {
+                return Integer.compare(other.tier, tier);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Constructor of the class
+     *
+     * @param widestFirstRow   number of seats in the widest row of first class
+     * @param widestEconomyRow number of seats in the widest row of economy class
+     */
+    public Waitlist(int widestFirstRow, int widestEconomyRow) {
+        widestRows[0] = widestFirstRow;
+        widestRows[1] = widestEconomyRow;
+        passengers = newSets(2, SeatType.count());
+        groups = newSets(2, 0);
+        for (int cabin = 0; cabin < 2; cabin++) {
+            groups[cabin] = newSets(1, widestRows[cabin] + 1)[0];
+        }
+    }
+
+    /**
+     * Adds a request behind the requests of its tier.
+     *
+     * @param request the request
+     * @return false if a request with the same name is already waiting
+     */
+    public synchronized boolean add(Request request) {
+        HashMap<String, Request> waiting = request.isGroup() ? waitingGroups : waitingPassengers;
+        if (waiting.putIfAbsent(request.name, request) != null) {
+            return false;
+        }
+        request.sequence = numOfRequests++;
+        getSet(request).add(request);
+        numOfWaiting[cabinIndex(request.isEconomy)]++;
+        numOfAllWaiting++;
+        return true;
+    }
+
+    /**
+     * Puts back a request taken to be seated that could not be seated, keeping its place.
+     *
+     * @param request the request
+     */
+    public synchronized void putBack(Request request) {
+        HashMap<String, Request> waiting = request.isGroup() ? waitingGroups : waitingPassengers;
+        if (waiting.putIfAbsent(request.name, request) == null) {
+            getSet(request).add(request);
+            numOfWaiting[cabinIndex(request.isEconomy)]++;
+            numOfAllWaiting++;
+        }
+    }
+
+    /**
+     * Removes a waiting request.
+     *
+     * @param name    name of the passenger or group
+     * @param isGroup true for a group
+     * @return the request, or null if no request has the name
+     */
+    public synchronized Request remove(String name, boolean isGroup) {
+        Request request = (isGroup ? waitingGroups : waitingPassengers).remove(name);
+        if (request != null) {
+            getSet(request).remove(request);
+            numOfWaiting[cabinIndex(request.isEconomy)]--;
+            numOfAllWaiting--;
+        }
+        return request;
+    }
+
+    /**
+     * Takes the first request that fits the free seats of a service class. A passenger fits if a seat
+     * of its type is free, a group if it can sit together and there are enough free seats.
+     *
+     * @param isEconomy     the service class
+     * @param freeSeatTypes the seat types with a free seat, bit i for the seat type of ordinal i
+     * @param longestRun    the longest run of free adjacent seats in a row
+     * @param emptySeats    the number of free seats
+     * @return the request, or null if none fits
+     */
+    public synchronized Request takeNext(boolean isEconomy, int freeSeatTypes, int longestRun, int emptySeats) {
+        int cabin = cabinIndex(isEconomy);
+        if (numOfWaiting[cabin] == 0) {
+            return null;
+        }
+        Request next = null;
+        for (int type = 0; type < SeatType.count(); type++) {
+            if ((freeSeatTypes & (1 << type)) != 0) {
+                next = first(passengers[cabin][type], next);
+            }
+        }
+        for (int run = 1; run <= Math.min(longestRun, widestRows[cabin]); run++) {
+            TreeSet<Request> waiting = groups[cabin][run];
+            if (!waiting.isEmpty() && waiting.first().names.length <= emptySeats) {
+                next = first(waiting, next);
+            }
+        }
+        if (next != null) {
+            remove(next.name, next.isGroup());
+        }
+        return next;
+    }
+
+    /**
+     * Checks if no request is waiting, without taking the lock of the waitlist.
+     *
+     * @return true if nobody is waiting
+     */
+    public boolean isEmpty() {
+        return numOfAllWaiting == 0;
+    }
+
+    /**
+     * Checks if no request is waiting for a service class.
+     *
+     * @param isEconomy the service class
+     * @return true if nobody is waiting
+     */
+    public synchronized boolean isEmpty(boolean isEconomy) {
+        return numOfWaiting[cabinIndex(isEconomy)] == 0;
+    }
+
+    /**
+     * Gets the number of requests waiting for a service class.
+     *
+     * @param isEconomy the service class
+     * @return the number of waiting passengers and groups
+     */
+    public synchronized int size(boolean isEconomy) {
+        return numOfWaiting[cabinIndex(isEconomy)];
+    }
+
+    /**
+     * Creates the empty sets of a service class, or of both service classes.
+     *
+     * @param length    number of arrays of sets
+     * @param numOfSets number of sets in each array
+     * @return the arrays of sets
+     */
+    private static TreeSet<Request>[][] newSets(int length, int numOfSets) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        TreeSet<Request>[][] sets = new TreeSet[length][numOfSets];
+        for (TreeSet<Request>[] array : sets) {
+            for (int i = 0; i < numOfSets; i++) {
+                array[i] = new TreeSet<>();
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * Picks the request seated first of the first request of a set and another request.
+     *
+     * @param waiting the set
+     * @param request the other request, or null
+     * @return the request seated first, or null if both are missing
+     */
+    private static Request first(TreeSet<Request> waiting, Request request) {
+        if (waiting.isEmpty()) {
+            return request;
+        }
+        Request head = waiting.first();
+        return (request == null || head.compareTo(request) < 0) ? head : request;
+    }
+
+    /**
+     * Finds the set a request waits in.
+     *
+     * @param request the request
+     * @return the set
+     */
+    private TreeSet<Request> getSet(Request request) {
+        int cabin = cabinIndex(request.isEconomy);
+        if (request.isGroup()) {
+            return groups[cabin][Math.min(request.names.length, widestRows[cabin])];
+        }
+        return passengers[cabin][request.seatType.ordinal()];
+    }
+
+    /**
+     * Gets the index of a service class in the arrays of sets.
+     *
+     * @param isEconomy the service class
+     * @return 1 for economy class, 0 for first class
+     */
+    private static int cabinIndex(boolean isEconomy) {
+        return isEconomy ? 1 : 0;
+    }
+}